@@ -0,0 +1,70 @@
+package runtax.bench;
+
+import static runtax.Rule.Builder.*;
+
+import runtax.Parser;
+import runtax.Rule;
+import runtax.RuleMap;
+import runtax.ParseOptions;
+
+import java.io.IOException;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+* Measures wide {@link Rule.Type#ONE_OF} alternations: a source of random keywords separated by spaces, every one of them matched by a choice between every keyword and a regex for anything else.
+*/
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AlternationBenchmark {
+
+  @Param({"8", "64"})
+  public int alternatives;
+
+  private String source;
+
+  private RuleMap ruleMap;
+
+  private ParseOptions peg;
+
+  @Setup
+  public void setup () {
+    Random random = new Random(42);
+    String[] keywords = new String[alternatives];
+    Rule[] options = new Rule[alternatives + 1];
+    for (int i = 0; i < alternatives; i++) {
+      //every keyword starts differently from most others
+      keywords[i] = (char) ('a' + i % 26) + "keyword" + i;
+      options[i] = text(keywords[i]);
+    }
+    options[alternatives] = regex("[A-Z][a-z]*");
+
+    StringBuilder builder = new StringBuilder();
+    while (builder.length() < 1 << 20) {
+      builder.append(random.nextInt(4) == 0 ? "Other" : keywords[random.nextInt(alternatives)]);
+      builder.append(random.nextInt(16) == 0 ? '\n' : ' ');
+    }
+    source = builder.toString();
+
+    ruleMap = new RuleMap(Map.of("main", sequence(entry("token", oneOf(options)))));
+    peg = ParseOptions.DEFAULT.engine(ParseOptions.Engine.PEG);
+  }
+
+  @Benchmark
+  public Parser.AST parseRegex () throws IOException {
+    return Parser.parseSource(source, ruleMap);
+  }
+
+  @Benchmark
+  public Parser.AST parsePeg () throws IOException {
+    return Parser.parseSource(source, ruleMap, peg);
+  }
+}
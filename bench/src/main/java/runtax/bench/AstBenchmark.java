@@ -0,0 +1,66 @@
+package runtax.bench;
+
+import runtax.Parser;
+import runtax.RuleMap;
+import runtax.ParserRuleMap;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+* Measures walking the AST of a generated rule file, via {@link Parser.AST.Cursor} and via {@link Parser.AST.Node#children()}, and reports the {@link Parser.AST#bytesPerNode()} of the AST at the end of every trial.
+* <p>The main Rule is the {@code line} Rule of the {@link ParserRuleMap}, so there are about four Nodes per line of the corpus.
+*/
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AstBenchmark {
+
+  @Param({"1MB", "64MB"})
+  public String size;
+
+  private Parser.AST ast;
+
+  @Setup
+  public void setup () throws IOException {
+    String source = Files.readString(CorpusGenerator.ruleFile(size));
+    ast = Parser.parseSource(source, new RuleMap(Map.of("main", ParserRuleMap.instance().get("line"))));
+  }
+
+  @TearDown
+  public void tearDown () {
+    System.out.println();
+    System.out.println(ast.size() + " Nodes, " + ast.bytesPerNode() + " bytes per Node");
+  }
+
+  @Benchmark
+  public long walkCursor () {
+    long sum = 0;
+    Parser.AST.Cursor cursor = ast.cursor();
+    do {
+      sum += cursor.end() - cursor.start();
+    } while (cursor.next());
+    return sum;
+  }
+
+  @Benchmark
+  public long walkChildren () {
+    return walk(ast.root());
+  }
+
+  private static long walk (Parser.AST.Node node) {
+    long sum = node.end() - node.start();
+    for (Parser.AST.Node child : node.children())
+      sum += walk(child);
+    return sum;
+  }
+}
@@ -0,0 +1,25 @@
+package runtax.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+* Runs the benchmarks selected by the usual JMH command line, always with the GC profiler attached, so every result also reports the allocation rate per operation.
+* <p>Usage: {@code java -jar target/benchmarks.jar [JMH options] [benchmark regex]}
+*/
+public final class BenchmarkMain {
+
+  private BenchmarkMain() {}
+
+  public static void main (String[] args) throws Exception {
+    CommandLineOptions options = new CommandLineOptions(args);
+    new Runner(
+      new OptionsBuilder()
+      .parent(options)
+      .addProfiler(GCProfiler.class)
+      .build()
+    ).run();
+  }
+}
@@ -0,0 +1,62 @@
+package runtax.bench;
+
+import runtax.Parser;
+import runtax.RuleMap;
+import runtax.ParserRuleMap;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+* Stresses concurrent calls of {@link Parser#parseSource(CharSequence, RuleMap)} sharing a single RuleMap.
+* <p>Every thread parses the same corpus with the {@code line} Rule of the {@link ParserRuleMap} and checks the number of lines it got, so a race shows up as a failed benchmark. Throughput should grow linearly with the number of threads up to the number of cores; compare {@code oneThread} with {@code allThreads}, or run with {@code -t}.
+*/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1)
+@State(Scope.Benchmark)
+public class ConcurrentParserBenchmark {
+
+  @Param({"64KB"})
+  public String size;
+
+  private String source;
+
+  private RuleMap ruleMap;
+
+  private int lines;
+
+  @Setup
+  public void setup () throws IOException {
+    source = Files.readString(CorpusGenerator.ruleFile(size));
+    ruleMap = new RuleMap(Map.of("main", ParserRuleMap.instance().get("line")));
+    lines = Parser.parseSource(source, ruleMap).root().children().size();
+  }
+
+  private Parser.AST parse () throws IOException {
+    Parser.AST ast = Parser.parseSource(source, ruleMap);
+    if (ast.root().children().size() != lines)
+      throw new IllegalStateException("Expected " + lines + " lines, got " + ast.root().children().size());
+    return ast;
+  }
+
+  @Benchmark
+  @Threads(1)
+  public Parser.AST oneThread () throws IOException {
+    return parse();
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public Parser.AST allThreads () throws IOException {
+    return parse();
+  }
+}
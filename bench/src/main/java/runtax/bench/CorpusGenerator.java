@@ -0,0 +1,157 @@
+package runtax.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.io.BufferedWriter;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import java.util.Random;
+
+/**
+* Generates rule files in the format of {@code src/runtax/rules/test.txt} of any size from a few KB up to several GB.
+* <p>The output is deterministic for a given size, so every benchmark run parses the same corpus. Generated files are cached in the corpus directory and only written once.
+* <p>Sizes are given as a number with an optional {@code KB}, {@code MB} or {@code GB} suffix, e.g. {@code 64KB}.
+*/
+public final class CorpusGenerator {
+
+  /**
+* The directory generated corpora are cached in, settable via the system property {@code runtax.bench.corpus}.
+  */
+  public static final Path DIRECTORY = Paths.get(System.getProperty("runtax.bench.corpus", "target/corpus"));
+
+  private static final String[] COMMENTS = {
+    "#this is a",
+    "# comment",
+    "#double quotes are evaluated as text",
+    "#unknown char sequences are evaluated as text, as long as they don't contain a space or true newline",
+    "#order matters!"
+  };
+
+  private CorpusGenerator() {}
+
+  /**
+* Parses a size like {@code 1KB}, {@code 64MB} or {@code 2GB} into a number of chars.
+  * @param size The size
+  * @return the number of chars
+  */
+  public static long parseSize (String size) {
+    String value = size.trim().toUpperCase();
+    long factor = 1;
+    if (value.endsWith("KB"))
+      factor = 1L << 10;
+    else if (value.endsWith("MB"))
+      factor = 1L << 20;
+    else if (value.endsWith("GB"))
+      factor = 1L << 30;
+    if (factor != 1)
+      value = value.substring(0, value.length() - 2);
+    return Long.parseLong(value.trim()) * factor;
+  }
+
+  /**
+* Returns the path of a generated rule file of the given {@code size}, generating it if it doesn't exist yet.
+  * @param size The size, e.g. {@code 1MB}
+  * @return the path of the rule file
+  * @throws IOException if the file can't be written
+  */
+  public static Path ruleFile (String size) throws IOException {
+    Path path = DIRECTORY.resolve("rules-" + size + ".txt");
+    if (Files.exists(path))
+      return path;
+    Files.createDirectories(DIRECTORY);
+    Path temp = Files.createTempFile(DIRECTORY, "rules-" + size, ".tmp");
+    try (Writer writer = new BufferedWriter(Files.newBufferedWriter(temp, StandardCharsets.UTF_8), 1 << 16)) {
+      write(writer, parseSize(size));
+    }
+    return Files.move(temp, path);
+  }
+
+  /**
+* Generates a rule file of about the given number of {@code chars} into a String. Only meant for sizes that comfortably fit onto the heap.
+  * @param chars The number of chars
+  * @return the rule file
+  */
+  public static String rules (long chars) {
+    StringBuilder builder = new StringBuilder((int) Math.min(chars + 256, Integer.MAX_VALUE - 8));
+    try {
+      write(builder, chars);
+    } catch (IOException ioe) {
+      throw new AssertionError(ioe);
+    }
+    return builder.toString();
+  }
+
+  /**
+* Writes rule definitions and comments until at least {@code chars} chars were written. Rules only reference Rules defined in lines above them.
+  */
+  private static void write (Appendable out, long chars) throws IOException {
+    Random random = new Random(chars);
+    StringBuilder line = new StringBuilder(128);
+    long written = 0;
+    int rules = 0;
+    while (written < chars) {
+      line.setLength(0);
+      if (random.nextInt(4) == 0) {
+        line.append(COMMENTS[random.nextInt(COMMENTS.length)]);
+      } else {
+        if (random.nextBoolean())
+          line.append(' ');
+        line.append("rule").append(rules).append(" = ");
+        int tokens = 1 + random.nextInt(4);
+        for (int i = 0; i < tokens; i++) {
+          if (i > 0)
+            line.append(' ');
+          token(line, random, rules);
+        }
+        line.append(" ;");
+        rules++;
+      }
+      line.append('\n');
+      out.append(line);
+      written += line.length();
+    }
+  }
+
+  private static void token (StringBuilder line, Random random, int rules) {
+    switch (random.nextInt(5)) {
+      case 0:
+        line.append('"').append("text ").append(random.nextInt(1000)).append('"');
+        break;
+      case 1:
+        line.append("'[a-z]+'");
+        break;
+      case 2:
+        line.append('(').append(rules > 0 ? "rule" + random.nextInt(rules) : "text").append(')');
+        break;
+      default:
+        line.append(rules > 0 ? "rule" + random.nextInt(rules) : "literal");
+    }
+    switch (random.nextInt(6)) {
+      case 0:
+        line.append('?');
+        break;
+      case 1:
+        line.append('*');
+        break;
+      case 2:
+        line.append('+');
+        break;
+      default:
+    }
+  }
+
+  /**
+* Generates rule files of the given sizes into the corpus directory.
+  * @param args The sizes, e.g. {@code 1KB 1MB 1GB}
+  * @throws IOException if a file can't be written
+  */
+  public static void main (String[] args) throws IOException {
+    for (String size : args)
+      System.out.println(ruleFile(size));
+  }
+}
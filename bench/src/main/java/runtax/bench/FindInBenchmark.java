@@ -0,0 +1,50 @@
+package runtax.bench;
+
+import static runtax.Rule.Builder.*;
+
+import runtax.Rule;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+* Measures extracting matches via {@link Rule#findIn(CharSequence)}, sequentially and in parallel, from a generated rule file.
+* <p>The Rule matches the name and value of every rule entry within its line, like a log extractor would, so a parallel Stream finds the same matches.
+* <p>Larger corpora can be selected via {@code -p size=1GB}, given enough heap.
+*/
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FindInBenchmark {
+
+  @Param({"1MB", "64MB"})
+  public String size;
+
+  private String source;
+
+  private Rule rule;
+
+  @Setup
+  public void setup () throws IOException {
+    source = Files.readString(CorpusGenerator.ruleFile(size));
+    rule = sequence(entry("name", regex("\\w+")), entry("", regex(" = ")), entry("value", regex("[^;\\n]*")), entry("", text(";")));
+  }
+
+  @Benchmark
+  public long sequential () {
+    return rule.findIn(source).mapToInt(match -> match.end() - match.start()).sum();
+  }
+
+  @Benchmark
+  public long parallel () {
+    return rule.findIn(source).parallel().mapToInt(match -> match.end() - match.start()).sum();
+  }
+}
@@ -0,0 +1,72 @@
+package runtax.bench;
+
+import static runtax.Rule.Builder.*;
+
+import runtax.Parser;
+import runtax.Rule;
+import runtax.RuleMap;
+import runtax.ParseOptions;
+
+import java.io.IOException;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+* Measures keyword sets: a source of random keywords separated by spaces, every one of them matched by a {@link Rule.Type#ONE_OF} of only texts, which is compiled into a trie.
+* <p>The keywords are short random words over a few letters, so many of them share prefixes or are prefixes of each other.
+*/
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeywordBenchmark {
+
+  @Param({"16", "256", "4096"})
+  public int keywords;
+
+  private String source;
+
+  private RuleMap ruleMap;
+
+  private ParseOptions peg;
+
+  @Setup
+  public void setup () {
+    Random random = new Random(42);
+    String[] words = new String[keywords];
+    Rule[] options = new Rule[keywords];
+    for (int i = 0; i < keywords; i++) {
+      StringBuilder word = new StringBuilder();
+      for (int length = 2 + random.nextInt(7); word.length() < length; )
+        word.append((char) ('a' + random.nextInt(8)));
+      words[i] = word.toString();
+      options[i] = text(words[i]);
+    }
+
+    StringBuilder builder = new StringBuilder();
+    while (builder.length() < 1 << 20) {
+      builder.append(words[random.nextInt(keywords)]);
+      builder.append(random.nextInt(16) == 0 ? '\n' : ' ');
+    }
+    source = builder.toString();
+
+    ruleMap = new RuleMap(Map.of("main", sequence(entry("keyword", oneOf(options)))));
+    peg = ParseOptions.DEFAULT.engine(ParseOptions.Engine.PEG);
+  }
+
+  @Benchmark
+  public Parser.AST parseRegex () throws IOException {
+    return Parser.parseSource(source, ruleMap);
+  }
+
+  @Benchmark
+  public Parser.AST parsePeg () throws IOException {
+    return Parser.parseSource(source, ruleMap, peg);
+  }
+}
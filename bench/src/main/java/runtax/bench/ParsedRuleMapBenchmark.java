@@ -0,0 +1,99 @@
+package runtax.bench;
+
+import runtax.ParsedRuleMap;
+import runtax.ParserRuleMap;
+import runtax.ParseOptions;
+import runtax.RuleAnalysis;
+import runtax.RuleMap;
+import runtax.RuleMapSnapshot;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.List;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+* Measures the construction of a {@link ParsedRuleMap} from generated rule files.
+* <p>Larger corpora can be selected via {@code -p size=1GB}, given enough heap.
+*/
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParsedRuleMapBenchmark {
+
+  @Param({"1KB", "64KB", "1MB"})
+  public String size;
+
+  private File file;
+
+  private String[] lines;
+
+  private ParserRuleMap parserRuleMap;
+
+  private ParsedRuleMap parsed;
+
+  private Path snapshot;
+
+  private byte[] hash;
+
+  @Setup
+  public void setup () throws IOException {
+    file = CorpusGenerator.ruleFile(size).toFile();
+    lines = Files.readAllLines(file.toPath()).toArray(new String[0]);
+    parserRuleMap = ParserRuleMap.instance();
+    parsed = new ParsedRuleMap(lines, parserRuleMap);
+    snapshot = Files.createTempFile("rules-" + size, ".snapshot");
+    snapshot.toFile().deleteOnExit();
+    hash = RuleMapSnapshot.hash(Files.readAllBytes(file.toPath()), parserRuleMap);
+    RuleMapSnapshot.write(parsed, hash, snapshot);
+  }
+
+  @Benchmark
+  public ParsedRuleMap fromLines () {
+    return new ParsedRuleMap(lines, parserRuleMap);
+  }
+
+  @Benchmark
+  public ParsedRuleMap fromFile () throws IOException {
+    return new ParsedRuleMap(file, parserRuleMap);
+  }
+
+  @Benchmark
+  public ParsedRuleMap fromLinesParallel () {
+    return new ParsedRuleMap(lines, parserRuleMap, ParseOptions.DEFAULT.parallel(true));
+  }
+
+  /**
+* Loads the Rules from a {@link RuleMapSnapshot} instead of parsing the file, including the check of its hash.
+  */
+  @Benchmark
+  public RuleMap fromSnapshot () throws IOException {
+    return RuleMapSnapshot.load(file, parserRuleMap, snapshot);
+  }
+
+  /**
+* Inserts a single definition into the middle of the lines, which only parses that line again.
+  */
+  @Benchmark
+  public ParsedRuleMap updateLine () {
+    return parsed.update(lines.length / 2, lines.length / 2, "inserted = \"text\" ;");
+  }
+
+  /**
+* Analyses every Rule for catastrophic backtracking, which {@code runtax.lint} adds to the construction unless it is {@code off}.
+  */
+  @Benchmark
+  public List<RuleAnalysis.Diagnostic> lint () {
+    return RuleAnalysis.lint(parsed);
+  }
+}
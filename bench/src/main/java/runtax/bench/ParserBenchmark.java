@@ -0,0 +1,108 @@
+package runtax.bench;
+
+import runtax.Parser;
+import runtax.RuleMap;
+import runtax.ParserRuleMap;
+import runtax.ParseOptions;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import java.nio.channels.FileChannel;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.time.Duration;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+* Measures {@link Parser#parseSource(CharSequence, RuleMap)}, {@link Parser#parseFile(Path, RuleMap, boolean)} and the sliding window of {@link Parser#parse(java.io.Reader, RuleMap, ParseOptions, java.util.function.Consumer)} over generated rule files.
+* <p>The main Rule is the {@code line} Rule of the {@link ParserRuleMap}, so every line of the corpus becomes a match. {@code parseSourceGuarded} adds a step budget and a timeout that are never hit, to measure what enforcing them costs. The {@link ParseOptions.Engine#PEG} engine and the parallel parse use the actual {@code main} Rule instead, the latter scanning for its {@link ParseOptions#iterations(boolean) iterations}. A sequential scan of {@code main} with the regex engine isn't measured: java.util.regex recurses for every repetition of {@code line}, which overflows the default thread stack on sources beyond about 720KB.
+* <p>Larger corpora can be selected via {@code -p size=1GB}, given enough heap.
+*/
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+  @Param({"1KB", "64KB", "1MB"})
+  public String size;
+
+  private Path file;
+
+  private String source;
+
+  private RuleMap ruleMap;
+
+  private ParseOptions peg;
+
+  private ParseOptions parallel;
+
+  private ParseOptions guarded;
+
+  @Setup
+  public void setup () throws IOException {
+    file = CorpusGenerator.ruleFile(size);
+    source = Files.readString(file);
+    ruleMap = new RuleMap(Map.of("main", ParserRuleMap.instance().get("line")));
+    peg = ParseOptions.DEFAULT.engine(ParseOptions.Engine.PEG);
+    parallel = ParseOptions.DEFAULT.parallel(true).iterations(true);
+    guarded = ParseOptions.DEFAULT.steps(Long.MAX_VALUE - 1).timeout(Duration.ofMinutes(1));
+  }
+
+  @Benchmark
+  public Parser.AST parseSource () throws IOException {
+    return Parser.parseSource(source, ruleMap);
+  }
+
+  @Benchmark
+  public Parser.AST parseSourceGuarded () throws IOException {
+    return Parser.parseSource(source, ruleMap, guarded);
+  }
+
+  @Benchmark
+  public Parser.AST parseSourcePeg () throws IOException {
+    return Parser.parseSource(source, ParserRuleMap.instance(), peg);
+  }
+
+  @Benchmark
+  public Parser.AST parseSourceParallel () throws IOException {
+    return Parser.parseSource(source, ParserRuleMap.instance(), parallel);
+  }
+
+  @Benchmark
+  public Parser.AST parseFile () throws IOException {
+    return Parser.parseFile(file, ruleMap, false);
+  }
+
+  @Benchmark
+  public Parser.AST parseMappedFile () throws IOException {
+    return Parser.parseFile(file, ruleMap, true);
+  }
+
+  @Benchmark
+  public long parseReader () throws IOException {
+    long[] matches = {0};
+    Parser.parse(new StringReader(source), ruleMap, ParseOptions.DEFAULT, ast -> matches[0]++);
+    return matches[0];
+  }
+
+  @Benchmark
+  public long parseChannel () throws IOException {
+    long[] matches = {0};
+    try (FileChannel channel = FileChannel.open(file)) {
+      Parser.parse(channel, StandardCharsets.UTF_8, ruleMap, ParseOptions.DEFAULT, ast -> matches[0]++);
+    }
+    return matches[0];
+  }
+}
@@ -0,0 +1,77 @@
+package runtax.bench;
+
+import static runtax.Rule.Builder.*;
+
+import runtax.Rule;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+* Measures the assembly of Rules from many parts via {@link Rule.Builder} and {@link Rule.Chain}.
+*/
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RuleBenchmark {
+
+  @Param({"16", "256", "4096"})
+  public int parts;
+
+  private Rule[] rules;
+
+  private Rule.Entry[] entries;
+
+  @Setup
+  public void setup () {
+    rules = new Rule[parts];
+    entries = new Rule.Entry[parts];
+    for (int i = 0; i < parts; i++) {
+      rules[i] = i % 2 == 0 ? text("text" + i) : regex("[a-z]+");
+      entries[i] = entry(i % 4 == 0 ? "name" + i : "", rules[i]);
+    }
+  }
+
+  @Benchmark
+  public Rule sequenceOfRules () {
+    return sequence(rules);
+  }
+
+  @Benchmark
+  public Rule sequenceOfEntries () {
+    return sequence(entries);
+  }
+
+  @Benchmark
+  public Rule oneOfRules () {
+    return oneOf(rules);
+  }
+
+  @Benchmark
+  public Rule repetition () {
+    return moreOrOne(optional(rules), zeroOrMore(rules));
+  }
+
+  @Benchmark
+  public Rule chained () {
+    Rule.Chain chain = chain();
+    for (int i = 0; i < parts; i++)
+      chain.rule(entries[i].name(), rules[i]);
+    return chain.build();
+  }
+
+  /**
+* Nests every part one level deeper than the one before and assembles the regex of the outermost Rule.
+  */
+  @Benchmark
+  public String nested () {
+    Rule rule = rules[0];
+    for (int i = 1; i < parts; i++)
+      rule = sequence(rule, rules[i]);
+    return rule.namedRegex();
+  }
+}
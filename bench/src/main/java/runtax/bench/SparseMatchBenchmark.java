@@ -0,0 +1,61 @@
+package runtax.bench;
+
+import static runtax.Rule.Builder.*;
+
+import runtax.Parser;
+import runtax.Rule;
+import runtax.RuleMap;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+* Measures searching a 1MB rule file for a main Rule that rarely matches, where most of the time goes into finding the offsets a match can start at.
+* <p>The {@code literal} Rule is a single quoted text, {@code literals} a choice between a few of them and {@code comment} a comment starting with a regex, so only its first char is known.
+*/
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SparseMatchBenchmark {
+
+  @Param({"literal", "literals", "comment"})
+  public String rule;
+
+  private String source;
+
+  private RuleMap ruleMap;
+
+  @Setup
+  public void setup () throws IOException {
+    source = Files.readString(CorpusGenerator.ruleFile("1MB"));
+    Rule main;
+    switch (rule) {
+      case "literal":
+        main = sequence(entry("text", text("\"text 210\"")));
+        break;
+      case "literals":
+        main = sequence(entry("text", oneOf(text("\"text 210\""), text("\"text 126\""), text("\"text 457\""), text("\"text 375\""))));
+        break;
+      case "comment":
+        main = sequence(entry("", regex("#")), entry("content", regex(".*")));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown rule " + rule);
+    }
+    ruleMap = new RuleMap(Map.of("main", main));
+  }
+
+  @Benchmark
+  public Parser.AST parseSource () throws IOException {
+    return Parser.parseSource(source, ruleMap);
+  }
+}
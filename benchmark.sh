@@ -0,0 +1,2 @@
+echo "Building Benchmarks"
+cd bench && mvn -B -q package && echo "Running Benchmarks" && java -jar target/benchmarks.jar "$@"
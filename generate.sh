@@ -0,0 +1,2 @@
+echo "Compiling Generator"
+mkdir -p target/generator && javac -encoding UTF-8 -d target/generator $(find src -name "*.java") && echo "Generating RuleMap" && java -cp target/generator runtax.RuleMapGenerator "$@"
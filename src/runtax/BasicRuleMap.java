@@ -13,9 +13,11 @@ import java.util.HashMap;
 public class BasicRuleMap extends RuleMap {
 
   /**
-* The only instance of this RuleMap. 
+* Holds the only instance of this RuleMap. Class initialization creates it on first use and safely publishes it to every thread. 
   */
-  private static BasicRuleMap instance;
+  private static final class Holder {
+    private static final BasicRuleMap INSTANCE = new BasicRuleMap();
+  }
 
 
   /**
@@ -59,12 +61,10 @@ public class BasicRuleMap extends RuleMap {
   }
 
   /**
-* Get the single instance this class can have. Creates a new one if none exists yet.
+* Get the single instance this class can have. Creates it if none exists yet. Thread-safe.
 * @return the single instance
   */
   public static BasicRuleMap instance () {
-    if (instance == null) 
-      instance = new BasicRuleMap();
-    return instance;
+    return Holder.INSTANCE;
   }
 }
@@ -0,0 +1,183 @@
+package runtax;
+
+import java.util.BitSet;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+* An immutable set of chars, used by the grammar analysis in {@link RuleAnalysis}.
+* <p>Sets of regex leaves are found by matching the compiled Pattern against every single char. A supplementary code point is two chars to the Pattern, so a set contains the surrogates of every code point the regex may match at the position of those chars. Only a regex matching chars beyond ASCII or naming code points itself may match supplementary ones, so the others are never probed with them. That's only done once per Rule, which keeps the set for as long as it is used itself, see {@link Rule#chars()}.
+*/
+final class CharSet {
+
+  static final CharSet EMPTY = new CharSet(new BitSet());
+  static final CharSet ALL = new CharSet(all());
+
+  private static final int ASCII = 128;
+  private static final int CHARS = Character.MAX_VALUE + 1;
+
+  private static final BitSet HIGH_SURROGATES = highSurrogates();
+
+  private final BitSet bits;
+
+  private CharSet (BitSet bits) {
+    this.bits = bits;
+  }
+
+  private static String everyChar () {
+    char[] chars = new char[CHARS];
+    for (int c = 0; c < CHARS; c++)
+      chars[c] = (char) c;
+    return new String(chars);
+  }
+
+  private static String everySupplementary () {
+    StringBuilder builder = new StringBuilder(2 * (Character.MAX_CODE_POINT + 1 - Character.MIN_SUPPLEMENTARY_CODE_POINT));
+    for (int c = Character.MIN_SUPPLEMENTARY_CODE_POINT; c <= Character.MAX_CODE_POINT; c++)
+      builder.appendCodePoint(c);
+    return builder.toString();
+  }
+
+  /**
+* Whether the {@code regex} may match a supplementary code point, given the {@code bits} of the chars it matches or starts with: only if one of them is beyond ASCII, or if the regex names code points itself, via a non-ASCII char, a property like {@code \p{So}} or an escape like {@code \x{1F600}}.
+  */
+  private static boolean supplementary (String regex, BitSet bits) {
+    if (bits.nextSetBit(ASCII) >= 0)
+      return true;
+    for (int i = 0; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (c >= ASCII)
+        return true;
+      if (c == '\\' && i + 1 < regex.length() && "pPxuN".indexOf(regex.charAt(++i)) >= 0)
+        return true;
+    }
+    return false;
+  }
+
+  private static BitSet highSurrogates () {
+    BitSet bits = new BitSet(CHARS);
+    bits.set(Character.MIN_HIGH_SURROGATE, Character.MAX_HIGH_SURROGATE + 1);
+    return bits;
+  }
+
+  private static BitSet all () {
+    BitSet bits = new BitSet(CHARS);
+    bits.set(0, CHARS);
+    return bits;
+  }
+
+  static CharSet of (char c) {
+    BitSet bits = new BitSet();
+    bits.set(c);
+    return new CharSet(bits);
+  }
+
+  /**
+* Returns the set of chars the given {@code regex} matches, which has to always match exactly one char, like a char class.
+* <p>Found by scanning a String of every char once, and one of every supplementary code point if the {@code regex} may match one, so the set has both surrogates of every supplementary code point it matches.
+  */
+  static CharSet matching (String regex) {
+    //every match is a whole run of consecutive chars in the set
+    Matcher matcher = Pattern.compile("(?:" + regex + ")++").matcher(everyChar());
+    BitSet bits = new BitSet(CHARS);
+    while (matcher.find())
+      bits.set(matcher.start(), matcher.end());
+    if (supplementary(regex, bits)) {
+      String chars = everySupplementary();
+      matcher.reset(chars);
+      while (matcher.find()) {
+        for (int i = matcher.start(); i < matcher.end(); i++)
+          bits.set(chars.charAt(i));
+      }
+    }
+    return new CharSet(bits);
+  }
+
+  /**
+* Returns the set of chars a match of the given {@code regex} can start with. A char can start a match if the Pattern either matches at it, even if only empty like a lookahead, or needs more input after it.
+* <p>Probing every supplementary code point as well would take ten times as long, so every high surrogate is in the set if a supplementary code point may start the match.
+  */
+  static CharSet starting (String regex) {
+    Matcher matcher = PatternCache.compile(regex).matcher("");
+    BitSet bits = new BitSet(CHARS);
+    for (int c = 0; c < CHARS; c++) {
+      matcher.reset(String.valueOf((char) c));
+      if (matcher.lookingAt() || matcher.hitEnd())
+        bits.set(c);
+    }
+    if (supplementary(regex, bits))
+      bits.or(HIGH_SURROGATES);
+    return new CharSet(bits);
+  }
+
+  CharSet union (CharSet other) {
+    if (other == EMPTY || other == this)
+      return this;
+    if (this == EMPTY)
+      return other;
+    BitSet bits = (BitSet) this.bits.clone();
+    bits.or(other.bits);
+    return new CharSet(bits);
+  }
+
+  CharSet intersection (CharSet other) {
+    if (other == ALL || other == this)
+      return this;
+    if (this == ALL)
+      return other;
+    BitSet bits = (BitSet) this.bits.clone();
+    bits.and(other.bits);
+    return new CharSet(bits);
+  }
+
+  boolean intersects (CharSet other) {
+    return bits.intersects(other.bits);
+  }
+
+  boolean contains (char c) {
+    return bits.get(c);
+  }
+
+  boolean isEmpty () {
+    return bits.isEmpty();
+  }
+
+  int size () {
+    return bits.cardinality();
+  }
+
+  /**
+* Returns the index of the first char in this set at or after {@code from}, or -1.
+  */
+  int next (int from) {
+    return bits.nextSetBit(from);
+  }
+
+  /**
+* Returns the index of the first char not in this set at or after {@code from}.
+  */
+  int nextClear (int from) {
+    return bits.nextClearBit(from);
+  }
+
+  @Override
+  public String toString () {
+    if (size() == CHARS)
+      return "[all]";
+    StringBuilder builder = new StringBuilder("[");
+    for (int start = next(0); start >= 0 && start < CHARS; start = next(nextClear(start))) {
+      int end = nextClear(start) - 1;
+      builder.append(escape(start));
+      if (end > start)
+        builder.append('-').append(escape(end));
+    }
+    return builder.append(']').toString();
+  }
+
+  private static String escape (int c) {
+    if (c > ' ' && c < 0x7F)
+      return String.valueOf((char) c);
+    return String.format("\\u%04X", c);
+  }
+}
@@ -0,0 +1,121 @@
+package runtax;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+* The dispatch table of a {@link Rule.Type#ONE_OF}: for every char, the alternatives that can match at a position starting with it, in their original order.
+* <p>An alternative can match at a position if the char there is in its FIRST set (see {@link RuleAnalysis}) or if it can match empty. Chars below 128 are looked up directly, all others in a sorted list of ranges with the same alternatives. At the end of the source, only the alternatives that can match empty are left.
+* <p>Tables are immutable and shared by every parse, keyed by their Rule, which is only held weakly.
+*/
+final class Dispatch {
+
+  private static final int ASCII = 128;
+  private static final int CHARS = Character.MAX_VALUE + 1;
+
+  private static final Map<Rule, Dispatch> tables = Collections.synchronizedMap(new WeakHashMap<>());
+
+  private final int[][] ascii;
+
+  /**
+* The first char of every range of chars from 128 on, with the alternatives of each range.
+  */
+  private final int[] starts;
+  private final int[][] ranges;
+
+  private final int[] empty;
+
+  private Dispatch (int[][] ascii, int[] starts, int[][] ranges, int[] empty) {
+    this.ascii = ascii;
+    this.starts = starts;
+    this.ranges = ranges;
+    this.empty = empty;
+  }
+
+  /**
+* Returns the dispatch table of the given ONE_OF {@code rule}.
+  */
+  static Dispatch of (Rule rule) {
+    return tables.computeIfAbsent(rule, Dispatch::build);
+  }
+
+  private static Dispatch build (Rule rule) {
+    List<Rule.Entry> entries = rule.rules();
+    CharSet[] firsts = new CharSet[entries.size()];
+    boolean[] nullable = new boolean[entries.size()];
+    for (int i = 0; i < firsts.length; i++) {
+      firsts[i] = RuleAnalysis.first(entries.get(i).rule());
+      nullable[i] = RuleAnalysis.nullable(entries.get(i).rule());
+    }
+
+    int[][] ascii = new int[ASCII][];
+    for (int c = 0; c < ASCII; c++)
+      ascii[c] = share(alternatives(firsts, nullable, c), c > 0 ? ascii[c-1] : null);
+
+    //the alternatives only change where a FIRST set starts or ends
+    Set<Integer> bounds = new TreeSet<>();
+    bounds.add(ASCII);
+    for (CharSet first : firsts) {
+      for (int start = first.next(ASCII); start >= 0 && start < CHARS; start = first.next(first.nextClear(start))) {
+        bounds.add(start);
+        bounds.add(first.nextClear(start));
+      }
+    }
+    bounds.remove(CHARS);
+
+    int[] starts = new int[bounds.size()];
+    int[][] ranges = new int[starts.length][];
+    int count = 0;
+    for (int start : bounds) {
+      int[] alternatives = alternatives(firsts, nullable, start);
+      //neighbouring ranges with the same alternatives are merged
+      if (count > 0 && Arrays.equals(alternatives, ranges[count-1]))
+        continue;
+      starts[count] = start;
+      ranges[count++] = alternatives;
+    }
+
+    return new Dispatch(ascii, Arrays.copyOf(starts, count), Arrays.copyOf(ranges, count), alternatives(firsts, nullable, -1));
+  }
+
+  /**
+* Returns the indices of the alternatives that can match at a position starting with {@code c}, or at the end of the source if {@code c} is -1.
+  */
+  private static int[] alternatives (CharSet[] firsts, boolean[] nullable, int c) {
+    int[] alternatives = new int[firsts.length];
+    int count = 0;
+    for (int i = 0; i < firsts.length; i++) {
+      if (nullable[i] || (c >= 0 && firsts[i].contains((char) c)))
+        alternatives[count++] = i;
+    }
+    return Arrays.copyOf(alternatives, count);
+  }
+
+  private static int[] share (int[] alternatives, int[] previous) {
+    return Arrays.equals(alternatives, previous) ? previous : alternatives;
+  }
+
+  /**
+* Returns the indices of the alternatives worth trying at {@code pos}.
+* @param source The source
+* @param pos The position
+* @param limit The end of the source
+* @return the indices in ascending order, never to be modified
+  */
+  int[] alternatives (CharSequence source, int pos, int limit) {
+    if (pos >= limit)
+      return empty;
+    char c = source.charAt(pos);
+    if (c < ASCII)
+      return ascii[c];
+    int index = Arrays.binarySearch(starts, c);
+    return ranges[index >= 0 ? index : -index - 2];
+  }
+}
@@ -0,0 +1,112 @@
+package runtax;
+
+import java.time.Duration;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+* A view of a source enforcing the {@link ParseOptions#steps(long)} and {@link ParseOptions#timeout(Duration)} of a parse, by counting every char the engines read from it, which is the one thing a backtracking regex can't do without.
+* <p>Reads are counted locally and added to the {@link Budget} of the parse every {@value #BATCH} reads, or right after a smaller budget, where the deadline is checked as well. So the cost of guarding stays low, and a parallel parse exceeds its budget by less than that many steps per thread.
+* <p>Note: Not thread-safe. A parallel parse gives every chunk a view of its own via {@link #subSequence(int, int)}, all of them sharing the Budget.
+*/
+final class Guard implements CharSequence {
+
+  static final int BATCH = 1 << 10;
+
+  private final CharSequence source;
+  private final Budget budget;
+
+  /**
+* The offset of the source in the input.
+  */
+  private final long offset;
+
+  private final int batch;
+  private int pending;
+
+  Guard (CharSequence source, Budget budget, long offset) {
+    this.source = source;
+    this.budget = budget;
+    this.offset = offset;
+    //a budget smaller than a batch is exceeded by the very first read past it
+    this.batch = budget.steps < BATCH ? (int) budget.steps + 1 : BATCH;
+  }
+
+  /**
+* Returns the {@code source} guarded by a new Budget for the limits of the {@code options}, or the {@code source} itself if they don't limit anything.
+  */
+  static CharSequence of (CharSequence source, ParseOptions options) {
+    Budget budget = Budget.of(options);
+    return budget == null ? source : new Guard(source, budget, 0);
+  }
+
+  @Override
+  public char charAt (int index) {
+    if (++pending == batch) {
+      pending = 0;
+      budget.spend(batch, offset + index);
+    }
+    return source.charAt(index);
+  }
+
+  @Override
+  public int length () {
+    return source.length();
+  }
+
+  /**
+* Returns a guarded view of a part of the source, sharing the Budget, but counting on its own.
+  */
+  @Override
+  public CharSequence subSequence (int start, int end) {
+    return new Guard(source.subSequence(start, end), budget, offset + start);
+  }
+
+  @Override
+  public String toString () {
+    return source.toString();
+  }
+
+  /**
+* The steps left and the deadline of a single parse.
+  */
+  static final class Budget {
+    private final long steps;
+    private final long deadline;
+    private final boolean timed;
+    private final AtomicLong spent = new AtomicLong();
+
+    private Budget (long steps, long deadline, boolean timed) {
+      this.steps = steps;
+      this.deadline = deadline;
+      this.timed = timed;
+    }
+
+    /**
+* Returns a new Budget for the limits of the {@code options}, starting the clock now, or null if they don't limit anything.
+    */
+    static Budget of (ParseOptions options) {
+      Duration timeout = options.timeout();
+      if (options.steps() == Long.MAX_VALUE && timeout == null)
+        return null;
+      long deadline = 0;
+      if (timeout != null) {
+        //about 292 years at most, which is as good as no timeout
+        long nanos = timeout.getSeconds() < Long.MAX_VALUE / 1_000_000_000L - 1 ? timeout.toNanos() : Long.MAX_VALUE;
+        deadline = System.nanoTime() + nanos;
+      }
+      return new Budget(options.steps(), deadline, timeout != null);
+    }
+
+    /**
+* Spends the given number of {@code steps}, the last of them at the {@code position}.
+* @throws ParseLimitException if no steps or no time is left
+    */
+    void spend (int steps, long position) {
+      if (spent.addAndGet(steps) > this.steps)
+        throw new ParseLimitException("Exceeded the budget of " + this.steps + " steps", position);
+      if (timed && System.nanoTime() - deadline > 0)
+        throw new ParseLimitException("Exceeded the timeout", position);
+    }
+  }
+}
@@ -0,0 +1,261 @@
+package runtax;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.util.Arrays;
+
+/**
+* A CharSequence view over a memory-mapped file, so Rules can be matched directly against the file without reading it onto the heap.
+* <p>ASCII and Latin-1 files are read one byte per char. UTF-8 files are indexed once when mapped and only decoded lazily in pages of about {@value #PAGE} chars, of which only the most recently used are kept.
+* <p>Malformed UTF-8 is decoded as U+FFFD. Files larger than {@link Integer#MAX_VALUE} bytes can't be mapped into a single CharSequence.
+* <p>Note: Instances keep a small page cache and aren't safe for concurrent use. Use {@link #subSequence(int, int)} to get an independent view for another thread.
+* @see Parser#parseFile(Path, RuleMap, boolean)
+*/
+public final class MappedCharSequence implements CharSequence {
+
+  private static final int PAGE = 1 << 16;
+  private static final int CACHED_PAGES = 4;
+
+  private final ByteBuffer bytes;
+
+  /**
+* Whether every char is stored in a single byte.
+  */
+  private final boolean singleByte;
+
+  /**
+* The first char index of every UTF-8 page, followed by the total number of chars.
+  */
+  private final int[] pageChars;
+
+  /**
+* The first byte index of every UTF-8 page, followed by the total number of bytes.
+  */
+  private final int[] pageBytes;
+
+  private final int offset;
+  private final int length;
+
+  private final int[] cachedPage = new int[CACHED_PAGES];
+  private final char[][] cachedChars = new char[CACHED_PAGES][];
+  private int nextSlot;
+
+  private char[] current;
+  private int currentStart;
+  private int currentEnd;
+
+  private MappedCharSequence (ByteBuffer bytes, boolean singleByte, int[] pageChars, int[] pageBytes, int offset, int length) {
+    this.bytes = bytes;
+    this.singleByte = singleByte;
+    this.pageChars = pageChars;
+    this.pageBytes = pageBytes;
+    this.offset = offset;
+    this.length = length;
+    Arrays.fill(cachedPage, -1);
+  }
+
+  /**
+* Maps the file at the given {@code path} as UTF-8.
+  * @param path The path of the file
+  * @return the mapped file
+  * @throws IOException if the file can't be mapped
+  */
+  public static MappedCharSequence map (Path path) throws IOException {
+    return map(path, StandardCharsets.UTF_8);
+  }
+
+  /**
+* Maps the file at the given {@code path} in the given {@code charset}.
+  * @param path The path of the file
+  * @param charset Either UTF-8, ISO-8859-1 or US-ASCII
+  * @return the mapped file
+  * @throws IOException if the file can't be mapped
+  * @throws IllegalArgumentException if the charset isn't supported
+  */
+  public static MappedCharSequence map (Path path, Charset charset) throws IOException {
+    boolean utf8 = charset.equals(StandardCharsets.UTF_8);
+    if (!utf8 && !charset.equals(StandardCharsets.ISO_8859_1) && !charset.equals(StandardCharsets.US_ASCII))
+      throw new IllegalArgumentException("Unsupported charset: " + charset);
+
+    ByteBuffer bytes;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE)
+        throw new IOException("File too large to be mapped: " + path);
+      bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    if (!utf8)
+      return new MappedCharSequence(bytes, true, null, null, 0, bytes.limit());
+    return index(bytes);
+  }
+
+  /**
+* Counts the chars of the UTF-8 {@code bytes} and records where each page starts, without decoding anything. Falls back to one byte per char if the bytes turn out to be plain ASCII.
+  */
+  private static MappedCharSequence index (ByteBuffer bytes) {
+    int size = bytes.limit();
+    int[] pageChars = new int[16];
+    int[] pageBytes = new int[16];
+    int pages = 0;
+    int chars = 0;
+    boolean ascii = true;
+
+    for (int i = 0; i < size; i++) {
+      int b = bytes.get(i);
+      if (b < 0) {
+        ascii = false;
+        if ((b & 0xC0) == 0x80)
+          continue;
+      }
+      if (chars >= pages * PAGE) {
+        if (pages + 1 >= pageChars.length) {
+          pageChars = Arrays.copyOf(pageChars, pageChars.length * 2);
+          pageBytes = Arrays.copyOf(pageBytes, pageBytes.length * 2);
+        }
+        pageChars[pages] = chars;
+        pageBytes[pages] = i;
+        pages++;
+      }
+      chars += (b & 0xF8) == 0xF0 ? 2 : 1;
+    }
+
+    if (ascii)
+      return new MappedCharSequence(bytes, true, null, null, 0, size);
+
+    pageChars[pages] = chars;
+    pageBytes[pages] = size;
+    return new MappedCharSequence(bytes, false, Arrays.copyOf(pageChars, pages + 1), Arrays.copyOf(pageBytes, pages + 1), 0, chars);
+  }
+
+  @Override
+  public int length () {
+    return length;
+  }
+
+  @Override
+  public char charAt (int index) {
+    if (index < 0 || index >= length)
+      throw new IndexOutOfBoundsException(index);
+    index += offset;
+    if (singleByte)
+      return (char) (bytes.get(index) & 0xFF);
+    if (index < currentStart || index >= currentEnd)
+      load(index);
+    return current[index - currentStart];
+  }
+
+  /**
+* Makes the page containing the char at the given absolute {@code index} the current page, decoding it if it isn't cached.
+  */
+  private void load (int index) {
+    int page = Arrays.binarySearch(pageChars, index);
+    if (page < 0)
+      page = -page - 2;
+
+    char[] chars = null;
+    for (int i = 0; i < CACHED_PAGES; i++) {
+      if (cachedPage[i] == page) {
+        chars = cachedChars[i];
+        break;
+      }
+    }
+    if (chars == null) {
+      chars = decode(page);
+      cachedPage[nextSlot] = page;
+      cachedChars[nextSlot] = chars;
+      nextSlot = (nextSlot + 1) % CACHED_PAGES;
+    }
+
+    current = chars;
+    currentStart = pageChars[page];
+    currentEnd = pageChars[page + 1];
+  }
+
+  /**
+* Decodes a single UTF-8 page. Every lead byte yields exactly as many chars as were counted for it by {@link #index(ByteBuffer)}.
+  */
+  private char[] decode (int page) {
+    char[] chars = new char[pageChars[page + 1] - pageChars[page]];
+    int end = pageBytes[page + 1];
+    int c = 0;
+    int i = pageBytes[page];
+    while (i < end) {
+      int b = bytes.get(i++);
+      if (b >= 0) {
+        chars[c++] = (char) b;
+        continue;
+      }
+      if ((b & 0xC0) == 0x80)
+        continue;
+
+      int expected;
+      int codePoint;
+      if ((b & 0xE0) == 0xC0) {
+        expected = 1;
+        codePoint = b & 0x1F;
+      } else if ((b & 0xF0) == 0xE0) {
+        expected = 2;
+        codePoint = b & 0x0F;
+      } else if ((b & 0xF8) == 0xF0) {
+        expected = 3;
+        codePoint = b & 0x07;
+      } else {
+        chars[c++] = '\uFFFD';
+        continue;
+      }
+
+      int read = 0;
+      while (read < expected && i < end && (bytes.get(i) & 0xC0) == 0x80) {
+        codePoint = (codePoint << 6) | (bytes.get(i++) & 0x3F);
+        read++;
+      }
+
+      if (expected == 3) {
+        if (read == 3 && codePoint >= 0x10000 && codePoint <= 0x10FFFF) {
+          chars[c++] = Character.highSurrogate(codePoint);
+          chars[c++] = Character.lowSurrogate(codePoint);
+        } else {
+          chars[c++] = '\uFFFD';
+          chars[c++] = '\uFFFD';
+        }
+      } else {
+        chars[c++] = read == expected ? (char) codePoint : '\uFFFD';
+      }
+    }
+    return chars;
+  }
+
+  /**
+* {inheritDoc}
+* <p>The returned view shares the mapped file and its index, but not the page cache.
+  */
+  @Override
+  public MappedCharSequence subSequence (int start, int end) {
+    if (start < 0 || end > length || start > end)
+      throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+    return new MappedCharSequence(bytes, singleByte, pageChars, pageBytes, offset + start, end - start);
+  }
+
+  @Override
+  public String toString () {
+    if (singleByte) {
+      byte[] copy = new byte[length];
+      bytes.duplicate().position(offset).get(copy);
+      return new String(copy, StandardCharsets.ISO_8859_1);
+    }
+    StringBuilder builder = new StringBuilder(length);
+    for (int i = 0; i < length; i++)
+      builder.append(charAt(i));
+    return builder.toString();
+  }
+}
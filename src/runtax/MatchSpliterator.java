@@ -0,0 +1,272 @@
+package runtax;
+
+import java.util.List;
+import java.util.ArrayList;
+
+import java.util.Spliterator;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+import java.util.regex.Matcher;
+import java.util.regex.MatchResult;
+
+/**
+* Finds the matches of a Rule in a source one at a time, like {@link Matcher#find()}, for {@link Rule#findIn(CharSequence)}.
+* <p>Only matches starting before the end of its range are reported; the last one may extend past it. The Matcher uses transparent and no anchoring bounds, so lookarounds, boundaries and anchors see the whole source no matter where the range starts.
+* <p>On the first split, the range is cut into chunks right after line terminators, like {@link Parser} does for a parallel parse, and the chunks are scanned concurrently. Every chunk is scanned from its start, so where the last match of a chunk runs past the start of the next one, the source is scanned again from its end until a match starts where one of the next chunk did. The matches are the same as those of a sequential scan, but all of them are found up front, and split from then on.
+*/
+final class MatchSpliterator implements Spliterator<MatchResult> {
+
+  private final Rule rule;
+  private final CharSequence source;
+  private final Prefilter prefilter;
+
+  /**
+* Where the next scan starts, and the end of the range plus one, so an empty match at the end of the source is found too.
+  */
+  private int pos;
+  private final int end;
+
+  /**
+* The Matcher of the running scan, or null before the first and after the last match.
+  */
+  private Matcher matcher;
+
+  /**
+* The matches of the range once it has been split, or null before.
+  */
+  private Spliterator<MatchResult> matches;
+
+  MatchSpliterator (Rule rule, CharSequence source) {
+    this(rule, source, Prefilter.of(rule), 0, source.length() + 1);
+  }
+
+  private MatchSpliterator (Rule rule, CharSequence source, Prefilter prefilter, int pos, int end) {
+    this.rule = rule;
+    this.source = source;
+    this.prefilter = prefilter;
+    this.pos = pos;
+    this.end = end;
+  }
+
+  @Override
+  public boolean tryAdvance (Consumer<? super MatchResult> action) {
+    if (matches != null)
+      return matches.tryAdvance(action);
+    if (pos >= end)
+      return false;
+    if (matcher == null) {
+      matcher = rule.pattern().matcher(source);
+      matcher.useTransparentBounds(true);
+      matcher.useAnchoringBounds(false);
+      matcher.region(pos, source.length());
+    }
+
+    boolean found = prefilter == null ? matcher.find() : Parser.find(matcher, prefilter, source, pos, Math.min(end, source.length()));
+    if (!found || matcher.start() >= end) {
+      pos = end;
+      matcher = null;
+      return false;
+    }
+    //after an empty match, the next scan starts one char later, just like find() does
+    pos = matcher.end() > matcher.start() ? matcher.end() : matcher.end() + 1;
+    action.accept(new Match(source, matcher));
+    return true;
+  }
+
+  @Override
+  public Spliterator<MatchResult> trySplit () {
+    if (matches == null) {
+      List<MatchResult> found = findAll();
+      if (found == null)
+        return null;
+      matches = found.spliterator();
+    }
+    return matches.trySplit();
+  }
+
+  /**
+* Finds all matches from {@code pos} on, scanning chunks of the source concurrently.
+* @return the matches, or null if the range is a single chunk
+  */
+  private List<MatchResult> findAll () {
+    if (pos >= end)
+      return null;
+    int[] bounds = Parser.bounds(source, pos, end - 1);
+    if (bounds.length == 2)
+      return null;
+
+    List<Callable<List<MatchResult>>> tasks = new ArrayList<>(bounds.length-1);
+    for (int i = 0; i < bounds.length-1; i++) {
+      int from = bounds[i];
+      int until = bounds[i+1];
+      tasks.add(() -> {
+        //a MappedCharSequence can't be shared between threads, but its views can
+        CharSequence view = source instanceof MappedCharSequence ? source.subSequence(0, source.length()) : source;
+        List<MatchResult> chunk = new ArrayList<>();
+        new MatchSpliterator(rule, view, prefilter, from, until).forEachRemaining(chunk::add);
+        return chunk;
+      });
+    }
+    List<List<MatchResult>> chunks = Parser.invokeAll(tasks);
+
+    List<MatchResult> found = new ArrayList<>();
+    int resume = pos;
+    for (int i = 0; i < chunks.size(); i++) {
+      List<MatchResult> chunk = chunks.get(i);
+      if (resume <= bounds[i])
+        found.addAll(chunk);
+      else if (resume < bounds[i+1])
+        found.addAll(chunk.subList(rescan(chunk, resume, bounds[i+1], found), chunk.size()));
+      if (!found.isEmpty()) {
+        MatchResult last = found.get(found.size()-1);
+        resume = last.end() > last.start() ? last.end() : last.end() + 1;
+      }
+    }
+    pos = end;
+    matcher = null;
+    return found;
+  }
+
+  /**
+* Scans the source again from {@code resume}, where the last match before a {@code chunk} ended within it, adding every match to {@code found} until one starts where one of the {@code chunk} did, as all matches after that are the same as in a sequential scan.
+* @return the index of that match in the {@code chunk}, or its size if there is none
+  */
+  private int rescan (List<MatchResult> chunk, int resume, int until, List<MatchResult> found) {
+    MatchSpliterator rescan = new MatchSpliterator(rule, source, prefilter, resume, until);
+    List<MatchResult> next = new ArrayList<>(1);
+    int index = 0;
+    while (rescan.tryAdvance(next::add)) {
+      MatchResult match = next.remove(0);
+      while (index < chunk.size() && chunk.get(index).start() < match.start())
+        index++;
+      if (index < chunk.size() && chunk.get(index).start() == match.start())
+        return index;
+      found.add(match);
+    }
+    return chunk.size();
+  }
+
+  @Override
+  public long estimateSize () {
+    if (matches != null)
+      return matches.estimateSize();
+    return Math.max(0, end - pos);
+  }
+
+  @Override
+  public int characteristics () {
+    return ORDERED | NONNULL;
+  }
+
+  /**
+* A match with the offsets of its groups only, reading the text of a group from its source when asked for it.
+* <p>The source is either the whole input or, for a match in a {@link SlidingWindow}, a copy of the part of the window its groups span.
+  */
+  static final class Match implements MatchResult {
+    private final CharSequence source;
+
+    /**
+* The offset of the source in the input.
+    */
+    private final long base;
+
+    /**
+* The start and end of every group in the source, starting with the whole match, or -1 for groups that didn't match.
+    */
+    private final int[] offsets;
+
+    Match (CharSequence source, MatchResult result) {
+      this(source, 0, result, 0);
+    }
+
+    private Match (CharSequence source, long base, MatchResult result, int shift) {
+      this.source = source;
+      this.base = base;
+      this.offsets = new int[(result.groupCount() + 1) * 2];
+      for (int group = 0; group <= result.groupCount(); group++) {
+        int start = result.start(group);
+        offsets[group * 2] = start < 0 ? -1 : start - shift;
+        offsets[group * 2 + 1] = start < 0 ? -1 : result.end(group) - shift;
+      }
+    }
+
+    /**
+* Returns the current match of the {@code result} in the {@code window}, copying the part of it the groups span, as the window moves on.
+* @param window The window the {@code result} matched
+* @param offset The offset of the window in the input
+* @param result The match
+    */
+    static Match copy (CharSequence window, long offset, MatchResult result) {
+      int start = result.start();
+      int end = result.end();
+      //groups within lookarounds may lie outside of the whole match
+      for (int group = 1; group <= result.groupCount(); group++) {
+        if (result.start(group) >= 0) {
+          start = Math.min(start, result.start(group));
+          end = Math.max(end, result.end(group));
+        }
+      }
+      return new Match(window.subSequence(start, end).toString(), offset + start, result, start);
+    }
+
+    /**
+* {@inheritDoc}
+* @throws ArithmeticException if the offset in the input doesn't fit into an int
+    */
+    @Override
+    public int start () {
+      return start(0);
+    }
+
+    /**
+* {@inheritDoc}
+* @throws ArithmeticException if the offset in the input doesn't fit into an int
+    */
+    @Override
+    public int start (int group) {
+      int start = offsets[group * 2];
+      return start < 0 ? -1 : Math.toIntExact(base + start);
+    }
+
+    /**
+* {@inheritDoc}
+* @throws ArithmeticException if the offset in the input doesn't fit into an int
+    */
+    @Override
+    public int end () {
+      return end(0);
+    }
+
+    /**
+* {@inheritDoc}
+* @throws ArithmeticException if the offset in the input doesn't fit into an int
+    */
+    @Override
+    public int end (int group) {
+      int end = offsets[group * 2 + 1];
+      return end < 0 ? -1 : Math.toIntExact(base + end);
+    }
+
+    @Override
+    public String group () {
+      return group(0);
+    }
+
+    @Override
+    public String group (int group) {
+      int start = offsets[group * 2];
+      return start < 0 ? null : source.subSequence(start, offsets[group * 2 + 1]).toString();
+    }
+
+    @Override
+    public int groupCount () {
+      return offsets.length / 2 - 1;
+    }
+
+    @Override
+    public String toString () {
+      return "Match[" + (base + offsets[0]) + ", " + (base + offsets[1]) + "]";
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package runtax;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+* The Nodes of an {@link Parser.AST}, stored as six parallel int arrays instead of an object per Node: the Entry, start, end, parent, last child and next sibling of every Node, which is just its index.
+* <p>Entries are kept once in a table and referenced by their index in it. The siblings of a parent form a ring, so the last child of a parent leads back to its first one, and appending a child takes constant time without a seventh array.
+* <p>The arrays grow in chunks of {@value #CHUNK} Nodes, so growing never copies more than a single chunk, and a large AST costs 24 bytes per Node plus a few bytes per chunk. The first chunk starts small and grows up to full size, as the AST of a single streamed match only holds a handful of Nodes.
+* <p>Note: Not thread-safe. Every AST is built by a single thread before it's handed out.
+*/
+final class NodeArena {
+
+  /**
+* The index standing for no Node at all.
+  */
+  static final int NONE = -1;
+
+  private static final int SHIFT = 12;
+  private static final int CHUNK = 1 << SHIFT;
+  private static final int MASK = CHUNK - 1;
+
+  private static final int INITIAL = 16;
+
+  private int[][] entries = new int[1][INITIAL];
+  private int[][] starts = new int[1][INITIAL];
+  private int[][] ends = new int[1][INITIAL];
+  private int[][] parents = new int[1][INITIAL];
+  private int[][] lastChildren = new int[1][INITIAL];
+  private int[][] siblings = new int[1][INITIAL];
+
+  private int size;
+
+  /**
+* Every distinct Entry, by the index the Nodes refer to it with.
+  */
+  private Rule.Entry[] table = new Rule.Entry[4];
+  private int tableSize;
+  private final Map<Rule.Entry, Integer> ids = new IdentityHashMap<>();
+
+  /**
+* The last Entry looked up, as Nodes of the same Entry mostly come in runs.
+  */
+  private Rule.Entry lastEntry;
+  private int lastId;
+
+  /**
+* Appends a Node as the last child of the {@code parent}.
+* @param parent The parent, or {@link #NONE} for the root
+* @return the new Node
+  */
+  int add (int parent, Rule.Entry entry, int start, int end) {
+    int node = size;
+    int chunk = node >>> SHIFT;
+    int i = node & MASK;
+    if (chunk == entries.length || entries[chunk] == null || i == entries[chunk].length)
+      grow();
+    size++;
+
+    entries[chunk][i] = id(entry);
+    starts[chunk][i] = start;
+    ends[chunk][i] = end;
+    parents[chunk][i] = parent;
+    lastChildren[chunk][i] = NONE;
+    if (parent == NONE) {
+      siblings[chunk][i] = NONE;
+    } else {
+      int last = get(lastChildren, parent);
+      //the new last child closes the ring back to the first one
+      siblings[chunk][i] = last == NONE ? node : get(siblings, last);
+      if (last != NONE)
+        set(siblings, last, node);
+      set(lastChildren, parent, node);
+    }
+    return node;
+  }
+
+  /**
+* Appends a copy of the {@code node} of the arena {@code from} and of all Nodes below it as the last child of the {@code parent}.
+* @return the copy
+  */
+  int copy (NodeArena from, int node, int parent) {
+    int copy = add(parent, from.entry(node), from.start(node), from.end(node));
+    for (int child = from.firstChild(node); child != NONE; child = from.nextSibling(child))
+      copy(from, child, copy);
+    return copy;
+  }
+
+  Rule.Entry entry (int node) {
+    return table[get(entries, node)];
+  }
+
+  int start (int node) {
+    return get(starts, node);
+  }
+
+  int end (int node) {
+    return get(ends, node);
+  }
+
+  int parent (int node) {
+    return get(parents, node);
+  }
+
+  int firstChild (int node) {
+    int last = get(lastChildren, node);
+    return last == NONE ? NONE : get(siblings, last);
+  }
+
+  int lastChild (int node) {
+    return get(lastChildren, node);
+  }
+
+  int nextSibling (int node) {
+    int parent = get(parents, node);
+    return parent == NONE || get(lastChildren, parent) == node ? NONE : get(siblings, node);
+  }
+
+  /**
+* Returns the number of Nodes.
+  */
+  int size () {
+    return size;
+  }
+
+  /**
+* Returns the number of bytes the arrays of this arena take, assuming 16 bytes per array header and 4 bytes per reference. The Entries themselves are shared with their Rules and not counted.
+  */
+  long bytes () {
+    long bytes = 0;
+    for (int[] chunk : entries) {
+      if (chunk != null)
+        bytes += 6 * (16 + 4L * chunk.length);
+    }
+    bytes += 6 * (16 + 4L * entries.length);
+    bytes += 16 + 4L * table.length;
+    return bytes;
+  }
+
+  private int id (Rule.Entry entry) {
+    if (entry == lastEntry)
+      return lastId;
+    Integer id = ids.get(entry);
+    if (id == null) {
+      if (tableSize == table.length)
+        table = Arrays.copyOf(table, tableSize * 2);
+      id = tableSize;
+      table[tableSize++] = entry;
+      ids.put(entry, id);
+    }
+    lastEntry = entry;
+    lastId = id;
+    return id;
+  }
+
+  /**
+* Makes room for the next Node: doubles the first chunk up to its full size, then adds a chunk.
+  */
+  private void grow () {
+    int chunk = size >>> SHIFT;
+    if (chunk == 0 && size < CHUNK) {
+      int length = Math.min(CHUNK, size * 2);
+      entries[0] = Arrays.copyOf(entries[0], length);
+      starts[0] = Arrays.copyOf(starts[0], length);
+      ends[0] = Arrays.copyOf(ends[0], length);
+      parents[0] = Arrays.copyOf(parents[0], length);
+      lastChildren[0] = Arrays.copyOf(lastChildren[0], length);
+      siblings[0] = Arrays.copyOf(siblings[0], length);
+      return;
+    }
+    if (chunk == entries.length) {
+      int length = chunk * 2;
+      entries = Arrays.copyOf(entries, length);
+      starts = Arrays.copyOf(starts, length);
+      ends = Arrays.copyOf(ends, length);
+      parents = Arrays.copyOf(parents, length);
+      lastChildren = Arrays.copyOf(lastChildren, length);
+      siblings = Arrays.copyOf(siblings, length);
+    }
+    entries[chunk] = new int[CHUNK];
+    starts[chunk] = new int[CHUNK];
+    ends[chunk] = new int[CHUNK];
+    parents[chunk] = new int[CHUNK];
+    lastChildren[chunk] = new int[CHUNK];
+    siblings[chunk] = new int[CHUNK];
+  }
+
+  private static int get (int[][] chunks, int node) {
+    return chunks[node >>> SHIFT][node & MASK];
+  }
+
+  private static void set (int[][] chunks, int node, int value) {
+    chunks[node >>> SHIFT][node & MASK] = value;
+  }
+}
@@ -0,0 +1,51 @@
+package runtax;
+
+/**
+* Thrown when a parse exceeds the step budget or the timeout of its {@link ParseOptions}, aborting it.
+* <p>Carries the position of the char that was about to be read and the innermost Rule being matched at the time, to find the part of the grammar and of the input that took so long. Nothing of the aborted parse is kept.
+* @see ParseOptions#steps(long)
+* @see ParseOptions#timeout(java.time.Duration)
+*/
+public class ParseLimitException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final long position;
+  private transient Rule rule;
+
+  ParseLimitException (String message, long position) {
+    super(message + " at position " + position);
+    this.position = position;
+  }
+
+  /**
+* Sets the Rule being matched, unless a Rule within it was set already.
+* @return this exception
+  */
+  ParseLimitException at (Rule rule) {
+    if (this.rule == null)
+      this.rule = rule;
+    return this;
+  }
+
+  /**
+* Returns the position in the input of the char that was about to be read when the limit was hit.
+* @return the position
+  */
+  public long position () {
+    return position;
+  }
+
+  /**
+* Returns the innermost Rule being matched when the limit was hit: the Rule scanned for with the regex engine, or the Rule the PEG engine was trying.
+* @return the Rule, or null if no Rule was being matched
+  */
+  public Rule rule () {
+    return rule;
+  }
+
+  @Override
+  public String getMessage () {
+    return rule == null ? super.getMessage() : super.getMessage() + " while matching " + rule.regex();
+  }
+}
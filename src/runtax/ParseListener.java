@@ -0,0 +1,129 @@
+package runtax;
+
+import java.io.PrintStream;
+
+/**
+* Receives events while a source is parsed by the {@link Parser} or a {@link ParsedRuleMap}.
+* <p>Every method does nothing by default, so implementations only override the events they care about.
+* <p>Parsing with {@link #NONE} costs nothing, as its empty methods are inlined and eliminated by the JIT.
+* @see ParseListener#trace(PrintStream)
+*/
+public interface ParseListener {
+
+  /**
+* The default listener, ignoring every event.
+  */
+  ParseListener NONE = new ParseListener() {};
+
+  /**
+* Called when the {@code rule} is about to be matched against the range from {@code start} to {@code end}.
+  * @param rule The Rule
+  * @param start The start of the range, inclusive
+  * @param end The end of the range, exclusive
+  */
+  default void ruleEntered (Rule rule, int start, int end) {}
+
+  /**
+* Called for every match of the {@code rule}.
+  * @param rule The Rule
+  * @param start The start of the match, inclusive
+  * @param end The end of the match, exclusive
+  */
+  default void ruleMatched (Rule rule, int start, int end) {}
+
+  /**
+* Called when the group of a named {@code entry} is tested in the current match.
+  * @param entry The Entry
+  */
+  default void groupTested (Rule.Entry entry) {}
+
+  /**
+* Called when the group of a named {@code entry} took part in the current match.
+  * @param entry The Entry
+  * @param start The start of the group, inclusive
+  * @param end The end of the group, exclusive
+  */
+  default void groupMatched (Rule.Entry entry, int start, int end) {}
+
+  /**
+* Called before the {@code rule} is tried at {@code pos}: by the PEG engine whenever it actually matches a Rule, but for Rules ending in a lazy repetition, and by the regex engine for every scan of a Rule for its next match.
+* <p>Every call is followed by a call of {@link #attemptEnded(Rule, int, int)} for the same {@code rule} and {@code pos}, with the attempts of the Rules within it in between.
+  * @param rule The Rule
+  * @param pos The position the attempt starts at
+  */
+  default void attemptStarted (Rule rule, int pos) {}
+
+  /**
+* Called after the {@code rule} was tried at {@code pos}.
+  * @param rule The Rule
+  * @param pos The position the attempt started at
+  * @param end The end of the match, or -1 if there was none
+  */
+  default void attemptEnded (Rule rule, int pos, int end) {}
+
+  /**
+* Called with every in-memory source before it is matched, returning the CharSequence to match instead. It has to hold the same chars, but may for example count how many of them are read, like a {@link Profiler} does.
+  * @param source The source
+  * @return the source to match
+  */
+  default CharSequence source (CharSequence source) {
+    return source;
+  }
+
+  /**
+* Called by a {@link ParsedRuleMap} for every comment line.
+  * @param content The content of the comment
+  */
+  default void commentFound (String content) {}
+
+  /**
+* Called by a {@link ParsedRuleMap} for every line defining a Rule.
+  * @param name The name of the Rule
+  * @param value The unparsed value of the Rule
+  */
+  default void ruleEntryFound (String name, String value) {}
+
+  /**
+* Returns a listener printing every event to the given {@code out}. Meant for debugging only.
+  * @param out The stream to print to
+  * @return the printing listener
+  */
+  static ParseListener trace (PrintStream out) {
+    return new ParseListener() {
+      @Override
+      public void ruleEntered (Rule rule, int start, int end) {
+        out.println("Looking for matches of " + rule.namedRegex() + " in [" + start + ", " + end + ")");
+      }
+
+      @Override
+      public void ruleMatched (Rule rule, int start, int end) {
+        out.println("Found a match in [" + start + ", " + end + ")");
+      }
+
+      @Override
+      public void groupTested (Rule.Entry entry) {
+        out.println("Testing group: " + entry.name());
+      }
+
+      @Override
+      public void groupMatched (Rule.Entry entry, int start, int end) {
+        out.println("Matched group: " + entry.name() + " in [" + start + ", " + end + ")");
+      }
+
+      @Override
+      public void commentFound (String content) {
+        out.println("Comment:");
+        out.println("Content: " + content);
+        out.println();
+      }
+
+      @Override
+      public void ruleEntryFound (String name, String value) {
+        out.println("RuleEntry:");
+        out.println("Name: " + name);
+        out.println("Rule: " + value);
+        out.println();
+      }
+    };
+  }
+}
@@ -0,0 +1,155 @@
+package runtax;
+
+import java.time.Duration;
+
+/**
+* The options of a single parse via {@link Parser#parseSource(CharSequence, RuleMap, ParseOptions)}.
+* <p>Instances are immutable. Every setter returns a modified copy, so the options can be shared freely:
+<pre>{@code
+ParseOptions options = ParseOptions.DEFAULT
+  .engine(ParseOptions.Engine.PEG)
+  .listener(ParseListener.trace(System.out))
+  .parallel(true);
+}</pre>
+*/
+public final class ParseOptions {
+
+  /**
+* The default options: the {@link Engine#REGEX} engine without a listener, parsing on the calling thread without any limits.
+  */
+  public static final ParseOptions DEFAULT = new ParseOptions(Engine.REGEX, ParseListener.NONE, false, false, SlidingWindow.SIZE, Long.MAX_VALUE, null);
+
+  /**
+* The engines a source can be matched with.
+  */
+  public enum Engine {
+
+    /**
+* Matches the {@link Rule#namedRegex()} of every Rule via {@code java.util.regex}.
+    */
+    REGEX,
+
+    /**
+* Interprets the Rule tree directly as a parsing expression grammar with packrat memoization, so parsing takes linear time no matter how ambiguous the grammar is, unless a Rule ends in a lazy repetition that something else follows, see {@link PegEngine}.
+* @see PegEngine
+    */
+    PEG
+  }
+
+  private final Engine engine;
+  private final ParseListener listener;
+  private final boolean parallel;
+  private final boolean iterations;
+  private final int window;
+  private final long steps;
+  private final Duration timeout;
+
+  private ParseOptions (Engine engine, ParseListener listener, boolean parallel, boolean iterations, int window, long steps, Duration timeout) {
+    this.engine = engine;
+    this.listener = listener;
+    this.parallel = parallel;
+    this.iterations = iterations;
+    this.window = window;
+    this.steps = steps;
+    this.timeout = timeout;
+  }
+
+  public Engine engine () {
+    return engine;
+  }
+
+  public ParseOptions engine (Engine engine) {
+    if (engine == null)
+      throw new NullPointerException();
+    return new ParseOptions(engine, listener, parallel, iterations, window, steps, timeout);
+  }
+
+  public ParseListener listener () {
+    return listener;
+  }
+
+  public ParseOptions listener (ParseListener listener) {
+    if (listener == null)
+      throw new NullPointerException();
+    return new ParseOptions(engine, listener, parallel, iterations, window, steps, timeout);
+  }
+
+  public boolean parallel () {
+    return parallel;
+  }
+
+  /**
+* Returns options that parse large sources in chunks on the {@link java.util.concurrent.ForkJoinPool#commonPool()}.
+* <p>The source is split after line terminators, every chunk is scanned on its own and the matches are merged in source order. Where a match crosses into the next chunk, the scan is repeated from the end of that match until it meets a match of the next chunk again, so the AST is the same as that of a sequential parse of the same Rule.
+* <p>A match spanning most of the source, like that of a repetition of lines, is therefore scanned again almost sequentially. Such a Rule only gains from {@link #iterations(boolean)}.
+* <p>Note: The listener is called from several threads at once and has to be thread-safe.
+* @param parallel Whether to parse in parallel
+* @return the modified options
+  */
+  public ParseOptions parallel (boolean parallel) {
+    return new ParseOptions(engine, listener, parallel, iterations, window, steps, timeout);
+  }
+
+  public boolean iterations () {
+    return iterations;
+  }
+
+  /**
+* Returns options that scan the source for the body of a greedy or possessive main Rule instead of the Rule itself, so the root gets a Node for every match of the body, like every line of {@link ParserRuleMap}'s {@code main}, rather than a single Node for the whole repetition.
+* <p>Just like a scan of the body on its own, this goes on past text the repetition would have stopped at. Any other main Rule is scanned as usual.
+* @param iterations Whether to scan for the body of a repetition
+* @return the modified options
+  */
+  public ParseOptions iterations (boolean iterations) {
+    return new ParseOptions(engine, listener, parallel, iterations, window, steps, timeout);
+  }
+
+  public int window () {
+    return window;
+  }
+
+  /**
+* Returns options that parse a Reader through a sliding window of the given size, see {@link Parser#parse(java.io.Reader, RuleMap, ParseOptions, java.util.function.Consumer)}. No match may be longer than the window, counting whatever the Rule looks at past its end to decide it, like the char after a greedy repetition. The {@value SlidingWindow#CONTEXT} chars lookbehinds can see are kept on top of the window. The default is {@value SlidingWindow#SIZE} chars.
+* @param window The size of the window in chars
+* @return the modified options
+* @throws IllegalArgumentException if the {@code window} isn't positive
+  */
+  public ParseOptions window (int window) {
+    if (window <= 0 || window > Integer.MAX_VALUE - SlidingWindow.CONTEXT)
+      throw new IllegalArgumentException("The window has to be positive: " + window);
+    return new ParseOptions(engine, listener, parallel, iterations, window, steps, timeout);
+  }
+
+  public long steps () {
+    return steps;
+  }
+
+  /**
+* Returns options that abort a parse with a {@link ParseLimitException} once it has read more than the given number of chars from the source, counting every read again, so backtracking over the same chars costs steps as well. This bounds the work of a grammar that backtracks catastrophically on some input, which no timeout of a regex could interrupt otherwise.
+* <p>Applies to in-memory sources and Readers alike, the latter counting across all of their matches. The budget is checked in batches of {@value Guard#BATCH} reads per thread, so a parse may read up to that many chars more than a larger budget allows. The default is {@link Long#MAX_VALUE}, no limit at all.
+* @param steps The maximum number of chars read
+* @return the modified options
+* @throws IllegalArgumentException if the {@code steps} are negative
+  */
+  public ParseOptions steps (long steps) {
+    if (steps < 0)
+      throw new IllegalArgumentException("The steps can't be negative: " + steps);
+    return new ParseOptions(engine, listener, parallel, iterations, window, steps, timeout);
+  }
+
+  public Duration timeout () {
+    return timeout;
+  }
+
+  /**
+* Returns options that abort a parse with a {@link ParseLimitException} once it has taken longer than the given {@code timeout}, measured from its start. The time is checked along with the {@link #steps(long)}, while the source is read, so a parse blocked on a Reader isn't interrupted. The default is null, no limit at all.
+* @param timeout The maximum duration of a parse, or null for none
+* @return the modified options
+* @throws IllegalArgumentException if the {@code timeout} is negative
+  */
+  public ParseOptions timeout (Duration timeout) {
+    if (timeout != null && timeout.isNegative())
+      throw new IllegalArgumentException("The timeout can't be negative: " + timeout);
+    return new ParseOptions(engine, listener, parallel, iterations, window, steps, timeout);
+  }
+}
@@ -2,20 +2,26 @@ package runtax;
 
 import java.util.Map;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 
-import java.util.ArrayList;
+import java.util.Set;
+import java.util.HashSet;
+
+import java.util.List;
+import java.util.Arrays;
+import java.util.Collections;
 
 import java.io.File;
 import java.io.FileReader;
-import java.io.BufferedReader;
+import java.io.Reader;
 import java.io.IOException;
-
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
+import java.io.UncheckedIOException;
 
 /**
 * {inheritDoc}
 * <p>The ParsedRuleMap allows for RuleSets to be assembles from text files following the format specified by the given ParserRuleMap.
+* <p>Unless the options set {@link ParseOptions#steps(long)} of their own, a parse may read every char of the source at most {@value #STEPS_PER_CHAR} times, so a malformed line the {@code line} Rule of the format backtracks on exponentially fails with a {@link ParseLimitException} instead of taking forever. A well-formed line of {@link ParserRuleMap} takes less than 2 reads per char.
+* <p>Once parsed, edits of the lines can be applied via {@link #update(int, int, String...)}, which only parses the edited lines again and shares every unaffected Rule.
 * <p>Note: The {@code name} of a Rule will ALWAYS be looked for first, so every format is required to define the {@code name} in an unambiguous manner.
 * <p>Example:
 <pre>
@@ -30,87 +36,406 @@ myName {myValue1:myValue2}
 */
 public class ParsedRuleMap extends RuleMap {
 
+  /**
+* The number of times a parse may read every char of the source, unless the options set steps of their own.
+  */
+  public static final long STEPS_PER_CHAR = 1024;
+
+  /**
+* Everything this ParsedRuleMap was parsed from, kept for {@link #update(int, int, String...)}.
+  */
+  private final Definitions definitions;
+
   public ParsedRuleMap (String[] lines, RuleMap ruleMap) {
-    super(parse(lines, ruleMap));
+    this(lines, ruleMap, ParseListener.NONE);
   }
 
   public ParsedRuleMap (File file, RuleMap ruleMap) throws IOException {
-    this(read(file), ruleMap);
+    this(file, ruleMap, ParseOptions.DEFAULT);
   }
 
   public ParsedRuleMap (String filePath, RuleMap ruleMap) throws IOException {
     this(new File(filePath), ruleMap);
   }
-  
-  private static String[] read (File file) throws IOException {
-    try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-      String line = null;
-      ArrayList<String> lines = new ArrayList<>();
-      while ((line = br.readLine()) != null) {
-        lines.add(line);
+
+  /**
+* Constructs a new ParsedRuleMap from the given {@code lines}, reporting every comment and Rule definition to the {@code listener}.
+  * @param lines The lines of the Rule definitions
+  * @param ruleMap The RuleMap defining the format of the lines
+  * @param listener The listener receiving the parse events
+  */
+  public ParsedRuleMap (String[] lines, RuleMap ruleMap, ParseListener listener) {
+    this(lines, ruleMap, ParseOptions.DEFAULT.listener(listener));
+  }
+
+  public ParsedRuleMap (File file, RuleMap ruleMap, ParseListener listener) throws IOException {
+    this(file, ruleMap, ParseOptions.DEFAULT.listener(listener));
+  }
+
+  public ParsedRuleMap (String filePath, RuleMap ruleMap, ParseListener listener) throws IOException {
+    this(new File(filePath), ruleMap, listener);
+  }
+
+  /**
+* Constructs a new ParsedRuleMap from the given {@code lines}, parsing them with the given {@code options}.
+* <p>With {@link ParseOptions#parallel(boolean)}, the lines are matched in parallel, but their Rules are still built one after another in the order of the lines, so every Rule only knows the Rules declared above it.
+  * @param lines The lines of the Rule definitions
+  * @param ruleMap The RuleMap defining the format of the lines
+  * @param options The options of the parse
+  * @throws ParseLimitException if the parse exceeds the {@link ParseOptions#steps(long)} or the {@link ParseOptions#timeout(java.time.Duration)} of the {@code options}, or {@link #STEPS_PER_CHAR} steps per char if they set none
+  */
+  public ParsedRuleMap (String[] lines, RuleMap ruleMap, ParseOptions options) {
+    this(parse(join(lines), ruleMap, options), LINT);
+  }
+
+  public ParsedRuleMap (File file, RuleMap ruleMap, ParseOptions options) throws IOException {
+    this(parse(read(file), ruleMap, options), LINT);
+  }
+
+  public ParsedRuleMap (Reader reader, RuleMap ruleMap) throws IOException {
+    this(reader, ruleMap, ParseOptions.DEFAULT);
+  }
+
+  /**
+* Constructs a new ParsedRuleMap from the Rule definitions read from the {@code reader}, parsing them with the given {@code options}.
+* <p>The input is read straight into a single source, which is kept for {@link #update(int, int, String...)}. Every line terminator becomes a line feed and the last line gets one too, just like for a file.
+  * @param reader The reader of the Rule definitions, which is read but not closed
+  * @param ruleMap The RuleMap defining the format of the lines
+  * @param options The options of the parse
+  * @throws IOException if the {@code reader} can't be read
+  * @throws ParseLimitException if the parse exceeds the {@link ParseOptions#steps(long)} or the {@link ParseOptions#timeout(java.time.Duration)} of the {@code options}, or {@link #STEPS_PER_CHAR} steps per char if they set none
+  */
+  public ParsedRuleMap (Reader reader, RuleMap ruleMap, ParseOptions options) throws IOException {
+    this(parse(read(reader), ruleMap, options), LINT);
+  }
+
+  private ParsedRuleMap (Definitions definitions, String lint) {
+    super(definitions.rules, lint);
+    this.definitions = definitions;
+  }
+
+  /**
+* Returns a new ParsedRuleMap with the lines from {@code from} (inclusive) to {@code to} (exclusive) replaced by the given {@code lines}.
+* <p>Only the edited lines are parsed again, starting with the last match before them and stopping as soon as a match starts where one did before. Only the Rules of definitions referencing a name whose Rule changed are built again, in the order of the lines. Every other Rule is shared with this ParsedRuleMap, including its compiled Pattern. The result is the same as parsing all lines again.
+* <p>Only the edited lines are reported to the listener of the options this ParsedRuleMap was parsed with.
+* <p>The updated ParsedRuleMap isn't checked via {@code runtax.lint} again, see {@link RuleMap}. Its {@link #diagnostics()} are found on first use.
+  * @param from The first line to replace
+  * @param to The line after the last line to replace
+  * @param lines The new lines
+  * @return the updated ParsedRuleMap
+  * @throws IndexOutOfBoundsException if the range isn't within the lines
+  * @throws ParseLimitException if parsing the edited lines exceeds the limits of the options this ParsedRuleMap was parsed with, which apply to every update anew
+  */
+  public ParsedRuleMap update (int from, int to, String... lines) {
+    String source = definitions.source;
+    int start = offset(source, from);
+    int end = offset(source, to);
+    if (start > end)
+      throw new IndexOutOfBoundsException("Lines " + from + " to " + to);
+    String replacement = join(lines);
+    String updated = new StringBuilder(source.length() - (end - start) + replacement.length())
+      .append(source, 0, start)
+      .append(replacement)
+      .append(source, end, source.length())
+      .toString();
+    return new ParsedRuleMap(definitions.update(updated, start, end, replacement.length()), "off");
+  }
+
+  /**
+* Returns a new ParsedRuleMap for a new version of the {@code lines}, only parsing the range of lines that differs from this version.
+  * @param lines The new lines
+  * @return the updated ParsedRuleMap
+  * @see #update(int, int, String...)
+  */
+  public ParsedRuleMap update (String[] lines) {
+    String[] old = lines();
+    int prefix = 0;
+    while (prefix < old.length && prefix < lines.length && old[prefix].equals(lines[prefix]))
+      prefix++;
+    int suffix = 0;
+    while (suffix < old.length - prefix && suffix < lines.length - prefix && old[old.length-1-suffix].equals(lines[lines.length-1-suffix]))
+      suffix++;
+    return update(prefix, old.length - suffix, Arrays.copyOfRange(lines, prefix, lines.length - suffix));
+  }
+
+  /**
+* Returns a new ParsedRuleMap for a new version of the {@code file}.
+  * @param file The file
+  * @return the updated ParsedRuleMap
+  * @throws IOException if the file can't be read
+  * @see #update(String[])
+  */
+  public ParsedRuleMap update (File file) throws IOException {
+    return update(lines(read(file)));
+  }
+
+  /**
+* Returns the lines this ParsedRuleMap was parsed from.
+* @return a copy of the lines
+  */
+  public String[] lines () {
+    return lines(definitions.source);
+  }
+
+  private static String[] lines (String source) {
+    String[] lines = source.split("\n", -1);
+    //every line ends with a line feed, so the last part is always empty
+    return Arrays.copyOf(lines, lines.length - 1);
+  }
+
+  private static String read (File file) throws IOException {
+    try (Reader reader = new FileReader(file)) {
+      return read(reader);
+    }
+  }
+
+  /**
+* Reads the {@code reader} into a single source with a line feed after every line, like joining the lines of a {@link java.io.BufferedReader#readLine()} would, without ever holding the lines on their own.
+  */
+  private static String read (Reader reader) throws IOException {
+    StringBuilder source = new StringBuilder();
+    char[] buffer = new char[8192];
+    boolean cr = false;
+    for (int read = reader.read(buffer); read >= 0; read = reader.read(buffer)) {
+      for (int i = 0; i < read; i++) {
+        char c = buffer[i];
+        //the line feed of a \r\n was already appended for the \r
+        if (c == '\n' && cr) {
+          cr = false;
+          continue;
+        }
+        cr = c == '\r';
+        source.append(cr ? '\n' : c);
       }
-    return lines.toArray(new String[0]);
     }
+    if (source.length() > 0 && source.charAt(source.length()-1) != '\n')
+      source.append('\n');
+    return source.toString();
   }
   
-  private static Map<String, Rule> parse (String[] lines, RuleMap ruleMap) {
-    String source = "";
+  private static String join (String[] lines) {
+    StringBuilder source = new StringBuilder();
     for (int i = 0; i < lines.length; i++) {
-      source += lines[i] + "\n";
+      source.append(lines[i]).append('\n');
     }
-    return parse(source, ruleMap);
+    return source.toString();
   }
 
-  private static Map<String, Rule> parse (String source, RuleMap ruleMap) {
+  /**
+* Returns the offset of the given {@code line} in the {@code source}, which may be the number of lines.
+  */
+  private static int offset (String source, int line) {
+    if (line < 0)
+      throw new IndexOutOfBoundsException("Line " + line);
+    int offset = 0;
+    for (int i = 0; i < line; i++) {
+      offset = source.indexOf('\n', offset) + 1;
+      if (offset == 0)
+        throw new IndexOutOfBoundsException("Line " + line);
+    }
+    return offset;
+  }
+
+  /**
+* Matches every {@code line} of the format in the {@code source} and builds the Rule of every {@code ruleEntry} in the order of the lines.
+  */
+  private static Definitions parse (String source, RuleMap ruleMap, ParseOptions options) {
+    Parser.AST ast;
+    try {
+      //the format was checked as its own RuleMap was constructed already
+      ast = Parser.parseSource(source, new RuleMap(Map.of("main", ruleMap.get("line")), "off"), bounded(options, source));
+    } catch (IOException ioe) {
+      //never thrown for a source in memory
+      throw new UncheckedIOException(ioe);
+    }
 
+    List<Parser.AST.Node> lines = ast.root().children();
     Map<String, Rule> rules = new HashMap<>();
+    int[] starts = new int[lines.size()];
+    int[] ends = new int[lines.size()];
+    Definition[] definitions = new Definition[lines.size()];
+    for (int i = 0; i < definitions.length; i++) {
+      Parser.AST.Node line = lines.get(i);
+      starts[i] = line.start();
+      ends[i] = line.end();
+      definitions[i] = definition(line, options.listener(), rules, null);
+      if (definitions[i] != null)
+        rules.put(definitions[i].name, definitions[i].rule);
+    }
+    return new Definitions(source, ruleMap, options, starts, ends, definitions, rules);
+  }
+
+  /**
+* Returns the Definition of a matched {@code line}, built from the {@code rules} declared above it, or null if the line isn't a {@code ruleEntry}. Returns the {@code previous} Definition instead if it defines the same.
+  */
+  private static Definition definition (Parser.AST.Node line, ParseListener listener, Map<String, Rule> rules, Definition previous) {
+    Parser.AST.Node ruleEntry = child(line, "ruleEntry");
+    Parser.AST.Node comment = child(line, "comment");
+    if (ruleEntry != null) {
+      Parser.AST.Node name = child(ruleEntry, "name");
+      Parser.AST.Node value = child(ruleEntry, "value");
+      if (name != null && value != null) {
+        listener.ruleEntryFound(name.text(), value.text());
+        if (previous != null && previous.name.equals(name.text()) && previous.value.equals(value.text()))
+          return previous;
+        return new Definition(name.text(), new RuleValue(value.text(), rules));
+      }
+    } else if (comment != null) {
+      Parser.AST.Node content = child(comment, "content");
+      listener.commentFound(content == null ? "" : content.text());
+    }
+    return null;
+  }
 
-    Pattern linePattern = Pattern.compile(ruleMap.get("line").namedRegex());
+  /**
+* Returns the {@code options} with a budget of {@link #STEPS_PER_CHAR} steps per char of the {@code source}, unless they set steps of their own.
+  */
+  private static ParseOptions bounded (ParseOptions options, String source) {
+    if (options.steps() != Long.MAX_VALUE)
+      return options;
+    return options.steps(STEPS_PER_CHAR * (source.length() + 1L));
+  }
 
-    Pattern ruleEntryPattern = Pattern.compile(ruleMap.get("ruleEntry").namedRegex());
+  private static Parser.AST.Node child (Parser.AST.Node node, String name) {
+    for (Parser.AST.Node child : node.children()) {
+      if (child.name().equals(name))
+        return child;
+    }
+    return null;
+  }
 
-    Pattern commentPattern = Pattern.compile(ruleMap.get("comment").namedRegex());
+  /**
+* A single Rule definition, with the words of its value it depends on.
+  */
+  private static final class Definition {
+    private final String name;
+    private final String value;
+    private final Set<String> words;
+    private final Rule rule;
 
-    Matcher sourceMatcher = linePattern.matcher(source);
+    private Definition (String name, RuleValue value) {
+      this.name = name;
+      this.value = value.value();
+      this.rule = value.parse();
+      this.words = value.words();
+    }
 
-    while (sourceMatcher.find()) {
-      String ruleEntry = null;
-      String comment = null;
-      if ((ruleEntry = sourceMatcher.group("ruleEntry")) != null) {
-        System.out.println("RuleEntry:");
-        Matcher ruleEntryMatcher = ruleEntryPattern.matcher(ruleEntry);
-        if (ruleEntryMatcher.find()) {
-          System.out.println("Name: " + ruleEntryMatcher.group("name"));
-          System.out.println("Rule: " + ruleEntryMatcher.group("value"));
-        }
-        System.out.println();
-      } else if ((comment = sourceMatcher.group("comment")) != null) {
-        System.out.println("Comment:");
-        Matcher commentMatcher = commentPattern.matcher(comment);
-        if (commentMatcher.find()) {
-          System.out.println("Content: " + commentMatcher.group("content"));
+    /**
+* Builds the {@code definition} again from the given {@code rules}.
+    */
+    private Definition (Definition definition, Map<String, Rule> rules) {
+      this(definition.name, new RuleValue(definition.value, rules));
+    }
+  }
+
+  /**
+* The source of a ParsedRuleMap with the offsets of every matched line and the Definitions among them, in source order.
+* <p>The words of the Definitions form the dependency graph of the Rules, used to only build those Rules again that depend on a changed one.
+  */
+  private static final class Definitions {
+    private final String source;
+    private final RuleMap format;
+    private final ParseOptions options;
+    private final int[] starts;
+    private final int[] ends;
+    //null for lines that aren't definitions
+    private final Definition[] definitions;
+    private final Map<String, Rule> rules;
+
+    private Definitions (String source, RuleMap format, ParseOptions options, int[] starts, int[] ends, Definition[] definitions, Map<String, Rule> rules) {
+      this.source = source;
+      this.format = format;
+      this.options = options;
+      this.starts = starts;
+      this.ends = ends;
+      this.definitions = definitions;
+      this.rules = rules;
+    }
+
+    /**
+* Returns the Definitions of the {@code updated} source, in which the chars from {@code start} to {@code end} were replaced by {@code length} new chars.
+    */
+    private Definitions update (String updated, int start, int end, int length) {
+      int delta = length - (end - start);
+      int count = starts.length;
+
+      //keep every match ending before the edit but the last one, in case it looked ahead
+      int kept = 0;
+      while (kept < count && ends[kept] < start)
+        kept++;
+      kept = Math.max(0, kept - 1);
+      //scan on just like Matcher.find() would after the last kept match
+      int from = kept == 0 ? 0 : ends[kept-1] > starts[kept-1] ? ends[kept-1] : ends[kept-1] + 1;
+
+      //once a new match starts where a match after the edit did, every following match is the same as before
+      int after = kept;
+      while (after < count && starts[after] < end)
+        after++;
+      int[] stops = new int[count - after];
+      for (int i = 0; i < stops.length; i++)
+        stops[i] = starts[after + i] + delta;
+
+      Parser.AST ast = new Parser.AST(updated, format.get("line"));
+      int stop = Parser.parseSource(ast, bounded(options, updated), from, stops);
+      int resumed = stop < 0 ? count : after + Arrays.binarySearch(stops, stop);
+
+      List<Parser.AST.Node> lines = ast.root().children();
+      int size = kept + lines.size() + (count - resumed);
+      int[] starts = Arrays.copyOf(this.starts, size);
+      int[] ends = Arrays.copyOf(this.ends, size);
+      Definition[] definitions = Arrays.copyOf(this.definitions, size);
+
+      Map<String, Rule> rules = new HashMap<>();
+      for (int i = 0; i < kept; i++) {
+        if (definitions[i] != null)
+          rules.put(definitions[i].name, definitions[i].rule);
+      }
+
+      //every name that may be bound to another Rule than before at the current line
+      Set<String> changed = new HashSet<>();
+      Set<Definition> reused = Collections.newSetFromMap(new IdentityHashMap<>());
+      for (int i = 0; i < lines.size(); i++) {
+        Parser.AST.Node node = lines.get(i);
+        int index = kept + i;
+        starts[index] = node.start();
+        ends[index] = node.end();
+        //a match before the edit is the same as before, as long as nothing above it changed
+        Definition previous = null;
+        if (changed.isEmpty() && node.end() < start && index < resumed && this.starts[index] == node.start())
+          previous = this.definitions[index];
+        Definition definition = definitions[index] = definition(node, options.listener(), rules, previous);
+        if (definition == null)
+          continue;
+        rules.put(definition.name, definition.rule);
+        if (definition == previous)
+          reused.add(previous);
+        else
+          changed.add(definition.name);
+      }
+      for (int i = kept; i < resumed; i++) {
+        if (this.definitions[i] != null && !reused.contains(this.definitions[i]))
+          changed.add(this.definitions[i].name);
+      }
+
+      for (int i = resumed; i < count; i++) {
+        int index = i - resumed + kept + lines.size();
+        starts[index] = this.starts[i] + delta;
+        ends[index] = this.ends[i] + delta;
+        Definition definition = this.definitions[i];
+        definitions[index] = definition;
+        if (definition == null)
+          continue;
+        if (!Collections.disjoint(definition.words, changed)) {
+          definition = definitions[index] = new Definition(definition, rules);
+          changed.add(definition.name);
+        } else {
+          //bound to the same Rule as before again
+          changed.remove(definition.name);
         }
-        System.out.println();
+        rules.put(definition.name, definition.rule);
       }
+
+      return new Definitions(updated, format, options, starts, ends, definitions, rules);
     }
-    
-    /*Pattern ruleEntryPattern = Pattern.compile(ruleMap.get("ruleEntry").namedRegex());
-
-    Matcher sourceMatcher = linePattern.matcher(source);
-    
-    while (sourceMatcher.find()) {
-      String line = sourceMatcher.group();
-      Matcher ruleEntryMatcher = ruleEntryPattern.matcher(line);
-      if (ruleEntryMatcher.find()) {
-        String name = ruleEntryMatcher.group("name");
-        String value = ruleEntryMatcher.group("value");
-        rules.put(name, Rule.Builder.text(value));
-        System.out.println("Rule: " + line);
-      } else {
-        System.out.println("Comment: " + line);
-      }
-    }*/
-    
-    return rules;
   }
-}
\ No newline at end of file
+}
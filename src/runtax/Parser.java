@@ -1,23 +1,56 @@
 package runtax;
 
-import java.util.Map;
-import java.util.HashMap;
-
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import java.util.function.Consumer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
+
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
 
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.Path;
 
-import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 
+/**
+* Parses sources into an {@link AST} with the main Rule of a {@link RuleMap}.
+* <p>Every method is thread-safe and can be called by any number of threads with the same RuleMap. RuleMaps and Rules are immutable, their Patterns are shared, and every thread resets its own idle Matchers instead of allocating new ones (see {@link PatternCache}). Only a {@link ParseListener} shared by concurrent parses has to be thread-safe itself.
+*/
 public class Parser {
 
+  /**
+* The minimum number of chars worth parsing as a chunk of its own in a parallel parse.
+  */
+  static final int CHUNK = 1 << 16;
+
+  /**
+* Scans for the matches of a single Entry like {@link Matcher#find()}.
+  */
+  private interface Scan {
+
+    /**
+* Adds a Node for every match starting in [{@code from}, {@code until}) to the {@code parent}, stopping before a match starting at one of the sorted offsets in {@code stops}, if given.
+* @return the offset the scan stopped at, or -1 if it reached {@code until}
+    */
+    int scan (AST.Node parent, int from, int until, int[] stops);
+  }
+
   private Parser() {}
 
   private static String readFile (Path path) throws IOException {
@@ -31,58 +64,756 @@ public class Parser {
   public static AST parseFile (File file, RuleMap ruleMap) throws IOException {
     return parseFile(file.toPath(), ruleMap);
   }
-  
+
   public static AST parseFile (Path path, RuleMap ruleMap) throws IOException {
+    return parseFile(path, ruleMap, false);
+  }
+
+  /**
+  * Parses the file at the given {@code path}, either read onto the heap or, if {@code mapped} is true, memory-mapped via {@link MappedCharSequence}, so the Rules are matched directly against the mapped file.
+  * @param path The path of the file
+  * @param ruleMap The RuleMap with the main Rule
+  * @param mapped Whether to map the file instead of reading it
+  * @return the AST of the file
+  * @throws IOException if the file can't be read or mapped
+  */
+  public static AST parseFile (Path path, RuleMap ruleMap, boolean mapped) throws IOException {
+    if (mapped)
+      return parseSource(MappedCharSequence.map(path), ruleMap);
     return parseSource(readFile(path), ruleMap);
   }
-  
-  public static AST parseSource (String source, RuleMap ruleMap) throws IOException {
-    return toAST(source, ruleMap.get("main"));
+
+  public static AST parseSource (CharSequence source, RuleMap ruleMap) throws IOException {
+    return parseSource(source, ruleMap, ParseListener.NONE);
   }
 
-  private static AST toAST (String text, Rule rule) {
-      System.out.println("Converting to AST: " + rule.namedRegex());
-    
-    Pattern pattern = Pattern.compile(rule.namedRegex());
-    Matcher matcher = pattern.matcher(text);
-    List<Rule.RuleEntry> ruleEntrys = new ArrayList<Rule.RuleEntry>(rule.rules());
+  /**
+  * Parses the {@code source} with the main Rule of the {@code ruleMap}, reporting to the given {@code listener}.
+  * @param source The source
+  * @param ruleMap The RuleMap with the main Rule
+  * @param listener The listener receiving the parse events
+  * @return the AST of the source
+  * @throws IOException never, kept for symmetry with {@link #parseFile(Path, RuleMap)}
+  */
+  public static AST parseSource (CharSequence source, RuleMap ruleMap, ParseListener listener) throws IOException {
+    return parseSource(source, ruleMap, ParseOptions.DEFAULT.listener(listener));
+  }
 
-    System.out.println("Looking for matches.");
-    while (matcher.find()) {
-      System.out.println("Found a match.");
-      for (int i = 0; i < ruleEntrys.size(); i++) {
-        System.out.println("Testing index: " + i);
+  /**
+  * Parses the {@code source} with the main Rule of the {@code ruleMap}, using the engine and listener of the given {@code options}.
+  * @param source The source
+  * @param ruleMap The RuleMap with the main Rule
+  * @param options The options of this parse
+  * @return the AST of the source
+  * @throws IOException never, kept for symmetry with {@link #parseFile(Path, RuleMap)}
+  * @throws ParseLimitException if the parse exceeds the {@link ParseOptions#steps(long)} or the {@link ParseOptions#timeout(java.time.Duration)}
+  * @see ParseOptions.Engine
+  */
+  public static AST parseSource (CharSequence source, RuleMap ruleMap, ParseOptions options) throws IOException {
+    Rule rule = ruleMap.get("main");
+    AST ast = new AST(source, rule);
+    //the AST keeps the source itself, only the engines read through the guard
+    CharSequence guarded = Guard.of(source, options);
+    Rule.Entry entry = options.iterations() ? iteration(rule) : Rule.Builder.entry("", rule);
+    if (options.parallel())
+      parallel(guarded, entry, ast.root(), options);
+    else if (options.iterations())
+      scan(guarded, entry, options).scan(ast.root(), ast.root().start(), ast.root().end()+1, null);
+    else if (options.engine() == ParseOptions.Engine.PEG)
+      new PegEngine(guarded, options.listener()).parse(rule, ast.root());
+    else
+      toAST(options.listener().source(guarded), rule, ast.root(), options.listener());
+    return ast;
+  }
 
-        Rule.RuleEntry entry = ruleEntrys.get(i);
+  /**
+  * Parses the {@code input} with the main Rule of the {@code ruleMap} through a sliding window of {@link ParseOptions#window()} chars, handing an AST of every match to the {@code consumer} as soon as more input can't change it anymore. Memory stays bounded by the window no matter how long the input is, so piped or decompressed streams can be parsed as they arrive.
+  * <p>The source of every AST is the text of its match, with {@link AST#offset()} giving its offset in the input. Its root has a single child: the Node of the match, with the Nodes of its named Entries below. With {@link ParseOptions#iterations(boolean)}, every match of the body of a repetition gets an AST of its own, so the window only has to fit a single iteration. Matches spanning the boundary between two reads are found just like in the whole input, as is every match that fits into the window. Lookbehinds see at most the last {@value SlidingWindow#CONTEXT} chars before the scan position.
+  * <p>The input is always matched with the {@link ParseOptions.Engine#REGEX} engine, on the calling thread, as only a regex reports whether its result depends on what follows. The listener gets offsets into the AST of the current match.
+  * @param input The input, which is read but not closed
+  * @param ruleMap The RuleMap with the main Rule
+  * @param options The options of this parse
+  * @param consumer The consumer of the AST of every match
+  * @throws IOException if the input can't be read, or a match doesn't fit into the window
+  * @throws IllegalArgumentException if the {@code options} ask for the PEG engine or a parallel parse
+  * @throws ParseLimitException if the parse exceeds the {@link ParseOptions#steps(long)} or the {@link ParseOptions#timeout(java.time.Duration)}
+  */
+  public static void parse (Reader input, RuleMap ruleMap, ParseOptions options, Consumer<AST> consumer) throws IOException {
+    if (options.engine() != ParseOptions.Engine.REGEX || options.parallel())
+      throw new IllegalArgumentException("A Reader can only be parsed sequentially with the regex engine");
+    Rule main = ruleMap.get("main");
+    Rule.Entry entry = options.iterations() ? iteration(main) : Rule.Builder.entry("", main);
+    Rule rule = entry.rule();
+    ParseListener listener = options.listener();
+    SlidingWindow window = new SlidingWindow(input, rule, options.window(), Guard.Budget.of(options));
+    while (find(window, rule)) {
+      Matcher matcher = window.matcher();
+      int start = matcher.start();
+      int end = matcher.end();
+      AST ast = new AST(window.text(start, end), main, window.offset() + start);
+      listener.ruleEntered(rule, 0, end - start);
+      listener.ruleMatched(rule, 0, end - start);
+      int node = ast.add(ast.root().index(), entry, 0, end - start);
+      toAST(matcher, rule.groups(), ast, node, listener, start);
+      consumer.accept(ast);
+    }
+  }
 
-        if (entry.rule().namedRegex() != null)
-          System.out.println("With regex: " + entry.rule().namedRegex());
+  private static boolean find (SlidingWindow window, Rule rule) throws IOException {
+    try {
+      return window.find();
+    } catch (ParseLimitException ple) {
+      throw ple.at(rule);
+    }
+  }
 
-        if (entry.rule().rules() != null)
-          System.out.println("With number of Rules: " + entry.rule().rules().size());
+  /**
+  * Parses the {@code input} decoded with the {@code charset}, like {@link #parse(Reader, RuleMap, ParseOptions, Consumer)}. Malformed input is decoded as U+FFFD.
+  * @param input The input, which is read but not closed
+  * @param charset The charset of the input
+  * @param ruleMap The RuleMap with the main Rule
+  * @param options The options of this parse
+  * @param consumer The consumer of the AST of every match
+  * @throws IOException if the input can't be read, or a match doesn't fit into the window
+  * @throws IllegalArgumentException if the {@code options} ask for the PEG engine or a parallel parse
+  * @throws ParseLimitException if the parse exceeds the {@link ParseOptions#steps(long)} or the {@link ParseOptions#timeout(java.time.Duration)}
+  */
+  public static void parse (ReadableByteChannel input, Charset charset, RuleMap ruleMap, ParseOptions options, Consumer<AST> consumer) throws IOException {
+    parse(reader(input, charset), ruleMap, options, consumer);
+  }
 
-        System.out.println("With name: " + entry.name());
-        
-        String name = entry.name();
-        if (name == null || name.isEmpty())
+  /**
+  * Returns a Reader decoding the {@code input} with the {@code charset}, replacing malformed input with U+FFFD, just like {@link MappedCharSequence} does.
+  */
+  static Reader reader (ReadableByteChannel input, Charset charset) {
+    return Channels.newReader(input, charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE), -1);
+  }
+
+  /**
+  * Adds a Node for every match of the main Rule of the {@code ast} from {@code from} on to its root, stopping before a match starting at one of the sorted offsets in {@code stops}. Always scans on the calling thread.
+  * @return the offset the scan stopped at, or -1 if it reached the end of the source
+  */
+  static int parseSource (AST ast, ParseOptions options, int from, int[] stops) {
+    AST.Node root = ast.root();
+    return scan(Guard.of(ast.source(), options), root.entry(), options).scan(root, from, root.end()+1, stops);
+  }
+
+  /**
+  * Adds a Node for every match of the {@code rule} in the {@code source} to the {@code parent}.
+  */
+  private static void toAST (CharSequence source, Rule rule, AST.Node parent, ParseListener listener) {
+    listener.ruleEntered(rule, parent.start(), parent.end());
+
+    Matcher matcher = PatternCache.matcher(rule.pattern(), source);
+    Prefilter prefilter = Prefilter.of(rule);
+    try {
+      matcher.region(parent.start(), parent.end());
+      if (prefilter != null) {
+        //the parent is the root, so its bounds are those of the source anyway
+        matcher.useTransparentBounds(true);
+        matcher.useAnchoringBounds(false);
+      }
+
+      //a single Entry for all matches, which the AST stores only once
+      Rule.Entry entry = Rule.Builder.entry("", rule);
+      int pos = parent.start();
+      while (find(matcher, rule, prefilter, source, pos, parent.end(), listener)) {
+        listener.ruleMatched(rule, matcher.start(), matcher.end());
+        int node = parent.ast.add(parent.index(), entry, matcher.start(), matcher.end());
+        toAST(matcher, rule, parent.ast, node, listener);
+        //after an empty match, the next scan starts one char later, just like find() does
+        pos = matcher.end() > matcher.start() ? matcher.end() : matcher.end() + 1;
+      }
+    } finally {
+      PatternCache.release(matcher);
+    }
+  }
+
+  /**
+  * Returns the Entry matched by every iteration of the {@code rule} if it is a greedy or possessive repetition, or an unnamed Entry of the {@code rule} itself otherwise.
+  */
+  private static Rule.Entry iteration (Rule rule) {
+    List<Rule.Entry> entries = rule.rules();
+    switch (rule.type()) {
+      case MORE_OR_ZERO:
+      case MORE_OR_ONE:
+      case ALL_OR_ZERO:
+      case ALL_OR_ONE:
+        if (entries.size() == 1)
+          return entries.get(0);
+        return Rule.Builder.entry("", Rule.Builder.sequence(entries.toArray(new Rule.Entry[0])));
+      default:
+        return Rule.Builder.entry("", rule);
+    }
+  }
+
+  /**
+  * Adds a Node for every match of the {@code entry} within the {@code parent} to it, scanning chunks of the source in parallel.
+  * <p>Every chunk is scanned from its start. Chunks are merged in source order. If the previous match didn't end exactly at the start of a chunk, the source is scanned again from its end until a match starts where one of the chunk did, as all matches after that are the same as in a sequential scan.
+  */
+  private static void parallel (CharSequence source, Rule.Entry entry, AST.Node parent, ParseOptions options) {
+    int[] bounds = bounds(source, parent.start(), parent.end());
+    if (bounds.length == 2) {
+      scan(source, entry, options).scan(parent, parent.start(), parent.end()+1, null);
+      return;
+    }
+
+    List<Callable<AST>> tasks = new ArrayList<>(bounds.length-1);
+    for (int i = 0; i < bounds.length-1; i++) {
+      int from = bounds[i];
+      int until = bounds[i+1];
+      tasks.add(() -> {
+        //neither a MappedCharSequence nor a Guard can be shared between threads, but their views can
+        CharSequence view = source instanceof MappedCharSequence || source instanceof Guard ? source.subSequence(0, source.length()) : source;
+        AST chunk = new AST(view, parent.rule());
+        scan(view, entry, options).scan(chunk.root(), from, until, null);
+        return chunk;
+      });
+    }
+    List<AST> chunks = invokeAll(tasks);
+
+    Scan scan = scan(source, entry, options);
+    int resume = parent.start();
+    for (int i = 0; i < chunks.size(); i++) {
+      List<AST.Node> nodes = chunks.get(i).root().children();
+      if (resume != bounds[i]) {
+        if (resume >= bounds[i+1])
           continue;
+        int[] starts = new int[nodes.size()];
+        for (int j = 0; j < starts.length; j++)
+          starts[j] = nodes.get(j).start();
+        int stop = scan.scan(parent, resume, bounds[i+1], starts);
+        nodes = stop < 0 ? Collections.emptyList() : nodes.subList(Arrays.binarySearch(starts, stop), nodes.size());
+      }
+      parent.adopt(nodes);
+      resume = parent.resume();
+    }
+  }
+
+  /**
+  * Returns the offsets the source is split into chunks at, each right after a line terminator, followed by {@code end + 1}.
+  */
+  static int[] bounds (CharSequence source, int start, int end) {
+    int size = Math.max(CHUNK, (end - start) / (ForkJoinPool.getCommonPoolParallelism() * 4) + 1);
+    int[] bounds = new int[8];
+    int count = 0;
+    bounds[count++] = start;
+    for (int pos = afterLine(source, start + size, end); pos < end; pos = afterLine(source, pos + size, end)) {
+      if (count == bounds.length)
+        bounds = Arrays.copyOf(bounds, count * 2);
+      bounds[count++] = pos;
+    }
+    bounds = Arrays.copyOf(bounds, count + 1);
+    bounds[count] = end + 1;
+    return bounds;
+  }
 
-        System.out.println("Testing group: " + name);
-        String match = null;
-        if ((match = matcher.group(name)) != null) {
-          //add to AST
-          System.out.println("Success.");
-          toAST(match, entry.rule());
-          System.out.println(match);
-        } else {
-          System.out.println("Failure.");
+  /**
+  * Returns the offset after the first line terminator at or after {@code pos}, or {@code end} if there is none.
+  */
+  static int afterLine (CharSequence source, int pos, int end) {
+    for (; pos < end; pos++) {
+      char c = source.charAt(pos);
+      if (c == '\r')
+        return pos + 1 < end && source.charAt(pos + 1) == '\n' ? pos + 2 : pos + 1;
+      if (c == '\n' || c == '\u0085' || c == '\u2028' || c == '\u2029')
+        return pos + 1;
+    }
+    return end;
+  }
+
+  private static Scan scan (CharSequence source, Rule.Entry entry, ParseOptions options) {
+    ParseListener listener = options.listener();
+    if (options.engine() == ParseOptions.Engine.PEG)
+      return (parent, from, until, stops) -> new PegEngine(source, listener).scan(entry, parent, from, until, stops);
+
+    Rule rule = entry.rule();
+    Prefilter prefilter = Prefilter.of(rule);
+    CharSequence scanned = listener.source(source);
+    return (parent, from, until, stops) -> {
+      listener.ruleEntered(rule, from, parent.end());
+      Matcher matcher = PatternCache.matcher(rule.pattern(), scanned);
+      try {
+        matcher.region(from, parent.end());
+        matcher.useTransparentBounds(true);
+        matcher.useAnchoringBounds(false);
+        int pos = from;
+        while (find(matcher, rule, prefilter, scanned, pos, Math.min(until, parent.end()), listener)) {
+          int start = matcher.start();
+          if (start >= until)
+            return -1;
+          if (stops != null && Arrays.binarySearch(stops, start) >= 0)
+            return start;
+          listener.ruleMatched(rule, start, matcher.end());
+          int node = parent.ast.add(parent.index(), entry, start, matcher.end());
+          toAST(matcher, rule, parent.ast, node, listener);
+          pos = matcher.end() > start ? matcher.end() : matcher.end() + 1;
         }
+        return -1;
+      } finally {
+        PatternCache.release(matcher);
+      }
+    };
+  }
+
+  /**
+  * Finds the next match of the {@code rule} from {@code pos} on, via the {@code prefilter} if there is one, reporting the scan to the {@code listener} as an attempt.
+  */
+  private static boolean find (Matcher matcher, Rule rule, Prefilter prefilter, CharSequence source, int pos, int until, ParseListener listener) {
+    listener.attemptStarted(rule, pos);
+    boolean found = false;
+    try {
+      found = prefilter == null ? matcher.find() : find(matcher, prefilter, source, pos, until);
+    } catch (ParseLimitException ple) {
+      throw ple.at(rule);
+    } finally {
+      //an aborted attempt ends as well, so a listener keeping a stack of attempts stays balanced
+      listener.attemptEnded(rule, pos, found ? matcher.end() : -1);
+    }
+    return found;
+  }
+
+  /**
+  * Finds the next match of the {@code matcher} starting in [{@code from}, {@code until}) and ending by the end of its region, just like {@link Matcher#find()} from {@code from} would, but only tries the offsets the {@code prefilter} lets through. The matcher has to use transparent and no anchoring bounds, so its region can be moved to every candidate.
+  */
+  static boolean find (Matcher matcher, Prefilter prefilter, CharSequence source, int from, int until) {
+    int end = matcher.regionEnd();
+    for (int pos = prefilter.next(source, from, until); pos >= 0; pos = prefilter.next(source, pos + 1, until)) {
+      matcher.region(pos, end);
+      if (matcher.lookingAt())
+        return true;
+    }
+    return false;
+  }
+
+  static <T> List<T> invokeAll (List<Callable<T>> tasks) {
+    List<T> results = new ArrayList<>(tasks.size());
+    for (Future<T> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+      try {
+        results.add(future.get());
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while parsing", ie);
+      } catch (ExecutionException ee) {
+        Throwable cause = ee.getCause();
+        if (cause instanceof RuntimeException)
+          throw (RuntimeException) cause;
+        if (cause instanceof Error)
+          throw (Error) cause;
+        throw new IllegalStateException(cause);
       }
     }
-    System.out.println("Completed conversion to AST.");
-    return new AST();
+    return results;
+  }
+
+  /**
+  * Adds a Node for every named Entry of the {@code rule} that took part in the current match of the {@code matcher} to the {@code parent} Node of the {@code ast} and descends into it.
+  * <p>The whole subtree is read from the groups of the single match via the precomputed group numbers of {@link Rule#groups()}, so nothing is matched again on the way down.
+  */
+  private static void toAST (Matcher matcher, Rule rule, AST ast, int parent, ParseListener listener) {
+    toAST(matcher, rule.groups(), ast, parent, listener, 0);
   }
 
-  //just a placeholder to get rid of errors
-  static class AST {}
-}
\ No newline at end of file
+  /**
+  * Adds the Nodes of the {@code groups} like {@link #toAST(Matcher, Rule, AST, int, ParseListener)}, at their offsets in the Matcher minus the {@code shift}.
+  */
+  private static void toAST (Matcher matcher, List<Rule.Group> groups, AST ast, int parent, ParseListener listener, int shift) {
+    for (int i = 0; i < groups.size(); i++) {
+      Rule.Group group = groups.get(i);
+      Rule.Entry entry = group.entry();
+
+      listener.groupTested(entry);
+      int start = matcher.start(group.index()) - shift;
+      int end = matcher.end(group.index()) - shift;
+      //a group within a repetition keeps the capture of an earlier iteration, which may lie outside the current parent
+      if (start < ast.start(parent) || end > ast.end(parent))
+        continue;
+      listener.groupMatched(entry, start, end);
+      int node = ast.add(parent, entry, start, end);
+
+      Rule child = entry.rule();
+      if (child.rules().isEmpty())
+        continue;
+      listener.ruleEntered(child, start, end);
+      listener.ruleMatched(child, start, end);
+      toAST(matcher, group.children(), ast, node, listener, shift);
+    }
+  }
+
+  /**
+  * An abstract syntax tree over a source.
+  * <p>Nodes only store offsets into the original source. Their text is only materialized when asked for via {@link Node#text()}.
+  * <p>All Nodes live in a single {@link NodeArena} of int arrays, at about 24 bytes per Node, so even millions of matches don't add up to millions of objects. A {@link Node} is just a view of one of them, created when asked for, and a {@link Cursor} walks the tree without creating any.
+  */
+  public static final class AST {
+    private final CharSequence source;
+    private final NodeArena nodes = new NodeArena();
+    private final Node root;
+    private final long offset;
+
+    AST (CharSequence source, Rule rule) {
+      this(source, rule, 0);
+    }
+
+    AST (CharSequence source, Rule rule, long offset) {
+      this.source = source;
+      this.root = new Node(this, nodes.add(NodeArena.NONE, Rule.Builder.entry("", rule), 0, source.length()));
+      this.offset = offset;
+    }
+
+    /**
+    * Get the source this AST was parsed from.
+    * @return the source
+    */
+    public CharSequence source () {
+      return source;
+    }
+
+    /**
+    * Get the root Node spanning the whole source. Its children are the matches of the main Rule.
+    * @return the root Node
+    */
+    public Node root () {
+      return root;
+    }
+
+    /**
+    * Get the offset of the source of this AST in the input it was parsed from, which is only ever not 0 for the AST of a single match of {@link Parser#parse(Reader, RuleMap, ParseOptions, Consumer)}.
+    * @return the offset in chars
+    */
+    public long offset () {
+      return offset;
+    }
+
+    /**
+    * Get a Cursor at the root.
+    * @return the Cursor
+    */
+    public Cursor cursor () {
+      return root.cursor();
+    }
+
+    /**
+    * Get the number of Nodes, including the root.
+    * @return the number of Nodes
+    */
+    public int size () {
+      return nodes.size();
+    }
+
+    /**
+    * Get the memory the Nodes of this AST take per Node, counting the arrays they are stored in, but neither the source nor the shared Rules.
+    * @return the bytes per Node
+    */
+    public double bytesPerNode () {
+      return (double) nodes.bytes() / nodes.size();
+    }
+
+    /**
+    * Appends a Node to the {@code parent} Node by its index, like {@link Node#add(Rule.Entry, int, int)} without creating the Node.
+    * @return the index of the new Node
+    */
+    int add (int parent, Rule.Entry entry, int start, int end) {
+      return nodes.add(parent, entry, start, end);
+    }
+
+    int start (int node) {
+      return nodes.start(node);
+    }
+
+    int end (int node) {
+      return nodes.end(node);
+    }
+
+    @Override
+    public String toString () {
+      StringBuilder builder = new StringBuilder();
+      Cursor cursor = cursor();
+      do {
+        builder.append("  ".repeat(cursor.depth())).append(cursor).append('\n');
+      } while (cursor.next());
+      return builder.toString();
+    }
+
+    /**
+    * A Node of an AST, associating a {@link Rule.Entry} with the range of the source it matched.
+    * <p>Nodes are views of the arena of their AST: two Nodes are equal if they are the same Node of the same AST.
+    */
+    public static final class Node {
+      private final AST ast;
+      private final int index;
+
+      private Node (AST ast, int index) {
+        this.ast = ast;
+        this.index = index;
+      }
+
+      Node add (Rule.Entry entry, int start, int end) {
+        return new Node(ast, ast.nodes.add(index, entry, start, end));
+      }
+
+      /**
+      * Appends copies of the {@code nodes} of another AST, with all Nodes below them, as children.
+      */
+      private void adopt (List<Node> nodes) {
+        for (Node node : nodes)
+          ast.nodes.copy(node.ast.nodes, node.index, index);
+      }
+
+      /**
+      * Returns the offset a scan for further children resumes at, just like {@link Matcher#find()} after the last child.
+      */
+      private int resume () {
+        int last = ast.nodes.lastChild(index);
+        if (last == NodeArena.NONE)
+          return start();
+        int start = ast.nodes.start(last);
+        int end = ast.nodes.end(last);
+        return end > start ? end : end + 1;
+      }
+
+      AST ast () {
+        return ast;
+      }
+
+      int index () {
+        return index;
+      }
+
+      /**
+      * Get the Entry this Node matched.
+      * @return the Entry
+      */
+      public Rule.Entry entry () {
+        return ast.nodes.entry(index);
+      }
+
+      /**
+      * Get the name of the Entry this Node matched.
+      * @return the name, empty for unnamed matches
+      */
+      public String name () {
+        return entry().name();
+      }
+
+      /**
+      * Get the Rule this Node matched.
+      * @return the Rule
+      */
+      public Rule rule () {
+        return entry().rule();
+      }
+
+      /**
+      * Get the offset of the first char this Node matched.
+      * @return the start offset, inclusive
+      */
+      public int start () {
+        return ast.nodes.start(index);
+      }
+
+      /**
+      * Get the offset after the last char this Node matched.
+      * @return the end offset, exclusive
+      */
+      public int end () {
+        return ast.nodes.end(index);
+      }
+
+      /**
+      * Get the child Nodes in source order.
+      * @return an unmodifiable list of the children
+      */
+      public List<Node> children () {
+        NodeArena nodes = ast.nodes;
+        int count = 0;
+        for (int child = nodes.firstChild(index); child != NodeArena.NONE; child = nodes.nextSibling(child))
+          count++;
+        if (count == 0)
+          return Collections.emptyList();
+        Node[] children = new Node[count];
+        int i = 0;
+        for (int child = nodes.firstChild(index); child != NodeArena.NONE; child = nodes.nextSibling(child))
+          children[i++] = new Node(ast, child);
+        return Collections.unmodifiableList(Arrays.asList(children));
+      }
+
+      /**
+      * Get a Cursor at this Node, which can't move above it.
+      * @return the Cursor
+      */
+      public Cursor cursor () {
+        return new Cursor(ast, index);
+      }
+
+      /**
+      * Materializes the text this Node matched.
+      * @return the matched text
+      */
+      public String text () {
+        return ast.source.subSequence(start(), end()).toString();
+      }
+
+      @Override
+      public boolean equals (Object object) {
+        if (!(object instanceof Node))
+          return false;
+        Node node = (Node) object;
+        return node.ast == ast && node.index == index;
+      }
+
+      @Override
+      public int hashCode () {
+        return System.identityHashCode(ast) * 31 + index;
+      }
+
+      @Override
+      public String toString () {
+        return name() + "[" + start() + ", " + end() + ")";
+      }
+    }
+
+    /**
+    * Walks the Nodes below and including the one it started at without creating any objects, reading the current Node straight from the arena.
+    * <p>Note: Not thread-safe, but any number of Cursors may walk the same AST.
+    */
+    public static final class Cursor {
+      private final AST ast;
+      private final int top;
+      private int index;
+      private int depth;
+
+      private Cursor (AST ast, int top) {
+        this.ast = ast;
+        this.top = top;
+        this.index = top;
+      }
+
+      /**
+      * Moves to the first child of the current Node.
+      * @return whether there is one, otherwise the Cursor stays where it is
+      */
+      public boolean firstChild () {
+        int child = ast.nodes.firstChild(index);
+        if (child == NodeArena.NONE)
+          return false;
+        index = child;
+        depth++;
+        return true;
+      }
+
+      /**
+      * Moves to the next sibling of the current Node.
+      * @return whether there is one, otherwise the Cursor stays where it is
+      */
+      public boolean nextSibling () {
+        if (index == top)
+          return false;
+        int sibling = ast.nodes.nextSibling(index);
+        if (sibling == NodeArena.NONE)
+          return false;
+        index = sibling;
+        return true;
+      }
+
+      /**
+      * Moves to the parent of the current Node.
+      * @return whether there is one, otherwise the Cursor stays where it is
+      */
+      public boolean parent () {
+        if (index == top)
+          return false;
+        index = ast.nodes.parent(index);
+        depth--;
+        return true;
+      }
+
+      /**
+      * Moves to the next Node in source order: the first child, else the next sibling of the current Node or of its closest ancestor having one.
+      * @return whether there is one, otherwise the Cursor stays where it is
+      */
+      public boolean next () {
+        if (firstChild())
+          return true;
+        int index = this.index;
+        int depth = this.depth;
+        do {
+          if (nextSibling())
+            return true;
+        } while (parent());
+        this.index = index;
+        this.depth = depth;
+        return false;
+      }
+
+      /**
+      * Get the depth of the current Node below the Node the Cursor started at.
+      * @return the depth, 0 for the Node it started at
+      */
+      public int depth () {
+        return depth;
+      }
+
+      /**
+      * Get the Entry the current Node matched.
+      * @return the Entry
+      */
+      public Rule.Entry entry () {
+        return ast.nodes.entry(index);
+      }
+
+      /**
+      * Get the name of the Entry the current Node matched.
+      * @return the name, empty for unnamed matches
+      */
+      public String name () {
+        return entry().name();
+      }
+
+      /**
+      * Get the Rule the current Node matched.
+      * @return the Rule
+      */
+      public Rule rule () {
+        return entry().rule();
+      }
+
+      /**
+      * Get the offset of the first char the current Node matched.
+      * @return the start offset, inclusive
+      */
+      public int start () {
+        return ast.nodes.start(index);
+      }
+
+      /**
+      * Get the offset after the last char the current Node matched.
+      * @return the end offset, exclusive
+      */
+      public int end () {
+        return ast.nodes.end(index);
+      }
+
+      /**
+      * Materializes the text the current Node matched.
+      * @return the matched text
+      */
+      public String text () {
+        return ast.source.subSequence(start(), end()).toString();
+      }
+
+      /**
+      * Get the current Node.
+      * @return a new view of the current Node
+      */
+      public Node node () {
+        return new Node(ast, index);
+      }
+
+      @Override
+      public String toString () {
+        return name() + "[" + start() + ", " + end() + ")";
+      }
+    }
+  }
+}
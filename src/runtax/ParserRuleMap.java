@@ -46,14 +46,13 @@ optional = "This text is optional."?
 zeroOrMore = "a"*
 #might appear once or more times
 oneOrMore = "b"+
-#TODO: gotta figure out how lazy and greedy work out...
+#all three are greedy: they match as often as they can, giving back only what the rest of the Rule needs
 
 #surrounded by spaces
 # oneOf : |
 
-#TODO: decide between the following two options
-# 1: could be "a" or "b" or "cd"
-# 2: could be "ad" or "bd" or "cd"
+#binds looser than spaces, so every alternative is a whole sequence
+#could be "a" or "b" or "cd", use a group for "ad" or "bd" or "cd": ("a" | "b" | "c") "d"
 oneOf = "a" | "b" | "c" "d"
 
 #needs space or special character on the outer side
@@ -75,16 +74,18 @@ doIExist = "Only after this line"
 public final class ParserRuleMap extends RuleMap {
 
   /**
-* The only instance of this RuleMap. 
+* Holds the only instance of this RuleMap. Class initialization creates it on first use and safely publishes it to every thread. 
   */
-  private static ParserRuleMap instance;
+  private static final class Holder {
+    private static final ParserRuleMap INSTANCE = new ParserRuleMap();
+  }
 
 
   /**
-* Constructs this ParserRuleMap from the hard-coded rules of {@code #init(Map)}
+* Constructs this ParserRuleMap from the hard-coded rules of {@code #init(Map)}, only ever warned about via {@code runtax.lint} unless it is {@code off}: its {@code group} and {@code line} Rules backtrack exponentially on some malformed lines, but changing them would change how every Rule file is read. A {@link ParsedRuleMap} bounds the parse of those lines by default instead.
   */
   private ParserRuleMap () {
-    super(init());
+    super(init(), LINT.equals("off") ? "off" : "warn");
   }
 
   /**
@@ -100,19 +101,21 @@ public final class ParserRuleMap extends RuleMap {
     Rule underscore = text("_");
     
     Rule whitespace = regex("\\s");
-    Rule space = moreOrOne(whitespace);
-    Rule optspace = moreOrZero(whitespace);
+    //whitespace is always followed by something else, so it never has to be given back
+    Rule space = allOrOne(whitespace);
+    Rule optspace = allOrZero(whitespace);
 
     Rule commentSymbol = text("#");
 
     rules.put(
       "comment",
-      optspace
+      chain(optspace)
       .rule(commentSymbol)
-      .rule(
+      .zeroOrMore(
         "content",
-        zeroOrMore(regex("."))
+        regex(".")
       ).regex("\\R")
+      .build()
     );
 
     rules.put(
@@ -174,7 +177,7 @@ public final class ParserRuleMap extends RuleMap {
           letter,
           underscore
         ),
-        moreOrZero(oneOf(
+        allOrZero(oneOf(
           letter,
           digit,
           underscore
@@ -187,19 +190,20 @@ public final class ParserRuleMap extends RuleMap {
     rules.put(
       "literal",
       oneOf(
-        new Rule.RuleEntry(
+        entry(
           "unquoted",
           moreOrOne(regex("\\S"))
         ),
-        new Rule.RuleEntry(
+        entry(
           "quoted",
-          text("\"")
+          chain(text("\""))
           .oneOrMore(
             "content",
             regex(".")
           )
           .regex("[^\\\\]")
           .text("\"")
+          .build()
         )
       )
     );
@@ -262,21 +266,23 @@ public final class ParserRuleMap extends RuleMap {
 
     rules.put(
       "ruleEntry",
-      sequence(optspace)
+      chain(optspace)
       .rule("name", rules.get("name"))
-      .rule(optspace, equals, optspace)
+      .rule("", optspace, equals, optspace)
       .rule("value", rules.get("value"))
       .rule(
+        "",
         space,
         text(";")
       )
+      .build()
     );
 
     rules.put(
       "line",
       oneOf(
-        new Rule.RuleEntry("comment", rules.get("comment")),
-        new Rule.RuleEntry("ruleEntry", rules.get("ruleEntry"))
+        entry("comment", rules.get("comment")),
+        entry("ruleEntry", rules.get("ruleEntry"))
       )
     );
 
@@ -292,12 +298,10 @@ public final class ParserRuleMap extends RuleMap {
   }
 
   /**
-* Get the single instance this class can have. Creates a new one if none exists yet.
+* Get the single instance this class can have. Creates it if none exists yet. Thread-safe.
 * @return the single instance
   */
   public static ParserRuleMap instance () {
-    if (instance == null) 
-      instance = new ParserRuleMap();
-    return instance;
+    return Holder.INSTANCE;
   }
 }
@@ -0,0 +1,155 @@
+package runtax;
+
+import java.util.Map;
+import java.util.LinkedHashMap;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+* A bounded, JVM-wide cache of compiled Patterns, shared by every {@link Rule} and {@link RuleMap}.
+* <p>Patterns are keyed by the regex they were compiled from, so structurally identical Rules compile only once, no matter whether they come from a RuleMap or were built ad-hoc via {@link Rule.Builder}.
+* <p>The cache is bounded by the number of Patterns and by the total length of their regex, which is used as an estimate of their retained size. Once either limit is exceeded the least recently used Patterns are evicted.
+* <p>The limits can be set via the system properties {@code runtax.patternCache.maxEntries} (default 1024) and {@code runtax.patternCache.maxChars} (default 4194304).
+* <p>Besides the shared Patterns, every thread keeps its idle Matchers, so parsing resets Matchers instead of allocating new ones. At most {@code runtax.patternCache.maxMatchers} (default 256) are kept per thread, the least recently released ones being dropped first, so a thread that moves on to other Patterns, like after a hot reload, doesn't keep the old ones alive.
+* @see Rule#pattern()
+* @see RuleMap#pattern(String)
+*/
+public final class PatternCache {
+
+  private static final int MAX_ENTRIES = Integer.getInteger("runtax.patternCache.maxEntries", 1024);
+  private static final long MAX_CHARS = Long.getLong("runtax.patternCache.maxChars", 4L * 1024 * 1024);
+
+  private static final int MAX_MATCHERS = Integer.getInteger("runtax.patternCache.maxMatchers", 256);
+
+  private static final Map<String, Pattern> patterns = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+* The idle Matchers of every thread, keyed by their Pattern, in the order they were released. A Matcher in use is removed from it, so nested uses of the same Pattern get a Matcher each.
+  */
+  private static final ThreadLocal<Map<Pattern, Matcher>> matchers = ThreadLocal.withInitial(() -> new LinkedHashMap<>(16, 0.75f, false) {
+    @Override
+    protected boolean removeEldestEntry (Map.Entry<Pattern, Matcher> eldest) {
+      return size() > MAX_MATCHERS;
+    }
+  });
+
+  private static long chars;
+
+  private static long hits;
+  private static long misses;
+  private static long evictions;
+
+  private PatternCache() {}
+
+  /**
+* Returns the compiled Pattern for the given {@code regex}, compiling it if it isn't cached yet.
+  * @param regex The regex to compile
+  * @return the compiled Pattern
+  * @throws java.util.regex.PatternSyntaxException if the regex is invalid
+  */
+  public static Pattern compile (String regex) {
+    synchronized (patterns) {
+      Pattern pattern = patterns.get(regex);
+      if (pattern != null) {
+        hits++;
+        return pattern;
+      }
+      misses++;
+    }
+
+    //compile outside the lock, so one large regex doesn't stall every other lookup
+    Pattern compiled = Pattern.compile(regex);
+
+    synchronized (patterns) {
+      Pattern pattern = patterns.putIfAbsent(regex, compiled);
+      if (pattern != null)
+        return pattern;
+      chars += regex.length();
+      evict();
+      return compiled;
+    }
+  }
+
+  /**
+* Returns a Matcher of the {@code pattern} over the {@code input}, resetting an idle Matcher of the current thread if there is one. Its region and bounds are the defaults of {@link Pattern#matcher(CharSequence)}.
+* <p>The Matcher has to be given back via {@link #release(Matcher)} once it's no longer used, and must not be used afterwards.
+  */
+  static Matcher matcher (Pattern pattern, CharSequence input) {
+    Matcher matcher = matchers.get().remove(pattern);
+    if (matcher == null)
+      return pattern.matcher(input);
+    //reset keeps the bounds
+    return matcher.reset(input).useTransparentBounds(false).useAnchoringBounds(true);
+  }
+
+  /**
+* Gives a Matcher of {@link #matcher(Pattern, CharSequence)} back to the current thread, dropping its least recently released one if it keeps too many. Drops the input of the Matcher, so an idle Matcher doesn't keep a source alive.
+  */
+  static void release (Matcher matcher) {
+    matchers.get().put(matcher.pattern(), matcher.reset(""));
+  }
+
+  /**
+* Evicts the least recently used Patterns until both limits are met again. Always keeps the most recent Pattern.
+  */
+  private static void evict () {
+    var iterator = patterns.keySet().iterator();
+    while ((patterns.size() > MAX_ENTRIES || chars > MAX_CHARS) && patterns.size() > 1) {
+      String regex = iterator.next();
+      iterator.remove();
+      chars -= regex.length();
+      evictions++;
+    }
+  }
+
+  /**
+* Removes all Patterns from the cache. The counters are kept.
+  */
+  public static void clear () {
+    synchronized (patterns) {
+      patterns.clear();
+      chars = 0;
+    }
+  }
+
+  /**
+* Returns the number of Patterns currently cached.
+* @return the number of cached Patterns
+  */
+  public static int size () {
+    synchronized (patterns) {
+      return patterns.size();
+    }
+  }
+
+  /**
+* Returns how often a requested Pattern was already cached.
+* @return the number of cache hits
+  */
+  public static long hits () {
+    synchronized (patterns) {
+      return hits;
+    }
+  }
+
+  /**
+* Returns how often a requested Pattern had to be compiled.
+* @return the number of cache misses
+  */
+  public static long misses () {
+    synchronized (patterns) {
+      return misses;
+    }
+  }
+
+  /**
+* Returns how many Patterns were evicted to stay within the limits.
+* @return the number of evictions
+  */
+  public static long evictions () {
+    synchronized (patterns) {
+      return evictions;
+    }
+  }
+}
@@ -0,0 +1,567 @@
+package runtax;
+
+import java.util.Map;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import java.util.List;
+import java.util.ArrayList;
+
+import java.util.regex.Matcher;
+
+/**
+* Matches a source by interpreting the {@link Rule.Type}/{@link Rule.Entry} tree directly as a parsing expression grammar, instead of going through the flattened {@link Rule#namedRegex()}.
+* <p>Every {@link Rule.Type#ONE_OF} is an ordered choice that commits to the first alternative that matches, only trying the alternatives whose FIRST set contains the next char (see {@link Dispatch}), except for a choice between unnamed texts, which walks their {@link Trie} and commits to the longest one, every greedy repetition and {@link Rule.Type#OPTIONAL} consumes as much as it can and never gives anything back, just like the possessive ones, and every other Rule is matched like an {@link Rule.Type#ATOMIC} group. The result of every Rule at every position is memoized (packrat parsing), so each Rule is matched at most once per position.
+* <p>Lazy repetitions ({@link Rule.Type#ZERO_OR_MORE}, {@link Rule.Type#ONE_OR_MORE}) only stop once whatever follows them matches. An unnamed one followed by the rest of its sequence, with nothing to match after the sequence, stops at the first position the rest matches at, as if rewritten to {@code (!rest body)* rest}, and is memoized like that. Any other Rule that may end in a lazy repetition, like a ONE_OF with a lazy alternative, depends on what follows it; it is matched with backtracking and isn't memoized, which may take quadratic time. Without such Rules, parsing takes linear time.
+* <p>Every named Entry at any depth becomes a Node of the AST, nested in the Node of its closest named ancestor. Unlike a regex group, a named Entry inside a repetition yields a Node for every iteration.
+* <p>Note: Not thread-safe. Every parse uses its own instance.
+* @see ParseOptions.Engine#PEG
+*/
+final class PegEngine {
+
+  private static final int FAIL = -1;
+
+  private static final Capture[] NO_CAPTURES = new Capture[0];
+
+  private static final Continuation END = pos -> pos;
+
+  private final CharSequence source;
+  private final int limit;
+  private final ParseListener listener;
+
+  private final Map<Object, Integer> ids = new IdentityHashMap<>();
+  private final Map<Rule, Boolean> nullable = new IdentityHashMap<>();
+  private final Map<Rule, Boolean> contextual = new IdentityHashMap<>();
+  private final Map<Rule, Matcher> matchers = new IdentityHashMap<>();
+  private final Map<Rule, Dispatch> dispatches = new IdentityHashMap<>();
+  private final Map<Rule, Trie> tries = new IdentityHashMap<>();
+  private final Map<List<Rule.Entry>, Object[]> tails = new IdentityHashMap<>();
+
+  /**
+* The memoized result of every context-free Rule and of every {@link #tail(List, int, int) tail}, keyed by its id in the upper and the position in the lower 32 bits.
+  */
+  private final Map<Long, Result> memo = new HashMap<>();
+
+  /**
+* What has to match after a Rule. Returns the end of the whole match, or {@link #FAIL}.
+  */
+  private interface Continuation {
+    int apply (int pos);
+  }
+
+  /**
+* A named Entry matched from {@code start} to {@code end}, with the named Entries matched inside of it.
+  */
+  private static final class Capture {
+    private final Rule.Entry entry;
+    private final int start;
+    private final int end;
+    private final Capture[] children;
+
+    private Capture (Rule.Entry entry, int start, int end, Capture[] children) {
+      this.entry = entry;
+      this.start = start;
+      this.end = end;
+      this.children = children;
+    }
+  }
+
+  /**
+* The end of a match with its captures, followed by those of the {@code rest} if there is one.
+  */
+  private static final class Result {
+    private static final Result FAILED = new Result(FAIL, NO_CAPTURES, null);
+
+    private final int end;
+    private final Capture[] captures;
+    private final Result rest;
+
+    private Result (int end, Capture[] captures, Result rest) {
+      this.end = end;
+      this.captures = captures;
+      this.rest = rest;
+    }
+
+    private void addTo (List<Capture> out) {
+      for (Result result = this; result != null; result = result.rest)
+        java.util.Collections.addAll(out, result.captures);
+    }
+  }
+
+  PegEngine (CharSequence source, ParseListener listener) {
+    this.source = listener.source(source);
+    this.limit = source.length();
+    this.listener = listener;
+  }
+
+  /**
+* Adds a Node for every match of the {@code rule} within the range of the {@code parent} to it, scanning like {@link Matcher#find()}.
+  */
+  void parse (Rule rule, Parser.AST.Node parent) {
+    scan(Rule.Builder.entry("", rule), parent, parent.start(), parent.end()+1, null);
+  }
+
+  /**
+* Adds a Node for every match of the Rule of the {@code entry} starting in [{@code from}, {@code until}) to the {@code parent}, scanning like {@link Matcher#find()} within the end of the {@code parent}.
+* <p>Stops before a match starting at one of the sorted offsets in {@code stops}, if given.
+* @return the offset the scan stopped at, or -1 if it reached {@code until}
+  */
+  int scan (Rule.Entry entry, Parser.AST.Node parent, int from, int until, int[] stops) {
+    try {
+      return scan(entry.rule(), entry, parent, from, until, stops);
+    } finally {
+      for (Matcher matcher : matchers.values())
+        PatternCache.release(matcher);
+      matchers.clear();
+    }
+  }
+
+  private int scan (Rule rule, Rule.Entry entry, Parser.AST.Node parent, int from, int until, int[] stops) {
+    listener.ruleEntered(rule, from, parent.end());
+    List<Capture> captures = new ArrayList<>();
+    int pos = from;
+    while (pos < until && pos <= parent.end()) {
+      //the match at a stop is already known
+      if (stops != null && java.util.Arrays.binarySearch(stops, pos) >= 0)
+        return pos;
+      int end = match(rule, pos, END, captures);
+      if (end == FAIL || end > parent.end()) {
+        captures.clear();
+        pos++;
+        continue;
+      }
+      listener.ruleMatched(rule, pos, end);
+      int node = parent.ast().add(parent.index(), entry, pos, end);
+      add(parent.ast(), node, captures);
+      captures.clear();
+      //nothing before the end of this match is ever looked at again
+      memo.clear();
+      pos = end > pos ? end : pos + 1;
+    }
+    return -1;
+  }
+
+  private static void add (Parser.AST ast, int parent, List<Capture> captures) {
+    for (Capture capture : captures) {
+      int node = ast.add(parent, capture.entry, capture.start, capture.end);
+      add(ast, node, java.util.Arrays.asList(capture.children));
+    }
+  }
+
+  /**
+* Matches the {@code rule} at {@code pos} followed by the {@code next} Continuation, appending the captures of the whole match to {@code out}. Leaves {@code out} untouched on failure.
+  */
+  private int match (Rule rule, int pos, Continuation next, List<Capture> out) {
+    try {
+      return attempt(rule, pos, next, out);
+    } catch (ParseLimitException ple) {
+      //the innermost Rule catches it first, as what follows a Rule is matched further down the stack
+      throw ple.at(rule);
+    }
+  }
+
+  private int attempt (Rule rule, int pos, Continuation next, List<Capture> out) {
+    List<Rule.Entry> entries = rule.rules();
+    if (entries.isEmpty()) {
+      listener.attemptStarted(rule, pos);
+      int end = FAIL;
+      try {
+        end = leaf(rule, pos);
+      } finally {
+        listener.attemptEnded(rule, pos, end);
+      }
+      return end == FAIL ? FAIL : next.apply(end);
+    }
+    if (rule.type() == Rule.Type.ONE_OF) {
+      Trie trie = trie(rule);
+      if (trie != null) {
+        listener.attemptStarted(rule, pos);
+        int end = FAIL;
+        try {
+          end = trie.match(source, pos, limit);
+        } finally {
+          listener.attemptEnded(rule, pos, end);
+        }
+        return end == FAIL ? FAIL : next.apply(end);
+      }
+    }
+
+    if (!contextual(rule)) {
+      Result result = memoized(rule, pos);
+      if (result.end == FAIL)
+        return FAIL;
+      int size = out.size();
+      result.addTo(out);
+      int end = next.apply(result.end);
+      if (end == FAIL)
+        truncate(out, size);
+      return end;
+    }
+
+    switch (rule.type()) {
+      case SEQUENCE:
+        return sequence(entries, 0, pos, next, out);
+      case ONE_OF:
+        for (int index : dispatch(rule).alternatives(source, pos, limit)) {
+          int end = entry(entries.get(index), pos, next, out);
+          if (end != FAIL)
+            return end;
+        }
+        return FAIL;
+      case ZERO_OR_MORE:
+        return lazy(entries, pos, 0, next, out);
+      case ONE_OR_MORE:
+        return lazy(entries, pos, 1, next, out);
+      default:
+        throw new IllegalStateException("Not contextual: " + rule.type());
+    }
+  }
+
+  /**
+* Returns the result of a context-free {@code rule} at {@code pos}, matching it only if it wasn't matched there before.
+  */
+  private Result memoized (Rule rule, int pos) {
+    long key = ((long) id(rule) << 32) | pos;
+    Result result = memo.get(key);
+    if (result != null)
+      return result;
+
+    listener.attemptStarted(rule, pos);
+    List<Rule.Entry> entries = rule.rules();
+    List<Capture> captures = new ArrayList<>();
+    int end = FAIL;
+    try {
+      switch (rule.type()) {
+        case SEQUENCE:
+          end = sequence(entries, 0, pos, END, captures);
+          break;
+        case ONE_OF:
+          end = FAIL;
+          for (int index : dispatch(rule).alternatives(source, pos, limit)) {
+            end = entry(entries.get(index), pos, END, captures);
+            if (end != FAIL)
+              break;
+          }
+          break;
+        case OPTIONAL:
+          end = sequence(entries, 0, pos, END, captures);
+          if (end == FAIL)
+            end = pos;
+          break;
+        case MORE_OR_ZERO:
+        case ALL_OR_ZERO:
+          end = greedy(entries, pos, 0, captures);
+          break;
+        case MORE_OR_ONE:
+        case ALL_OR_ONE:
+          end = greedy(entries, pos, 1, captures);
+          break;
+        case ZERO_OR_MORE:
+          end = lazy(entries, pos, 0, END, captures);
+          break;
+        case ONE_OR_MORE:
+          end = lazy(entries, pos, 1, END, captures);
+          break;
+        default:
+          end = sequence(entries, 0, pos, END, captures);
+      }
+    } finally {
+      //an aborted attempt ends as well, so a listener keeping a stack of attempts stays balanced
+      listener.attemptEnded(rule, pos, end);
+    }
+
+    result = end == FAIL ? Result.FAILED : new Result(end, captures(captures), null);
+    memo.put(key, result);
+    return result;
+  }
+
+  private int sequence (List<Rule.Entry> entries, int index, int pos, Continuation next, List<Capture> out) {
+    if (index == entries.size())
+      return next.apply(pos);
+    Rule.Entry entry = entries.get(index);
+    if (next == END && lazy(entry))
+      return lazy(entries, index, pos, out);
+    return entry(entry, pos, end -> sequence(entries, index + 1, end, next, out), out);
+  }
+
+  /**
+* Whether the {@code entry} is an unnamed lazy repetition.
+  */
+  private static boolean lazy (Rule.Entry entry) {
+    Rule.Type type = entry.rule().type();
+    return (type == Rule.Type.ZERO_OR_MORE || type == Rule.Type.ONE_OR_MORE) && (entry.name() == null || entry.name().isEmpty());
+  }
+
+  /**
+* Matches the lazy repetition at {@code index} of a sequence followed by the rest of the sequence, with nothing to match after that.
+  */
+  private int lazy (List<Rule.Entry> entries, int index, int pos, List<Capture> out) {
+    Rule rule = entries.get(index).rule();
+    int size = out.size();
+    if (rule.type() == Rule.Type.ONE_OR_MORE) {
+      pos = sequence(rule.rules(), 0, pos, END, out);
+      if (pos == FAIL)
+        return FAIL;
+    }
+    Result result = tail(entries, index, pos);
+    if (result.end == FAIL) {
+      truncate(out, size);
+      return FAIL;
+    }
+    result.addTo(out);
+    return result.end;
+  }
+
+  /**
+* Returns the result of the lazy repetition at {@code index} of a sequence followed by the rest of the sequence at {@code pos}, iterating zero or more times.
+* <p>With nothing after the sequence, the repetition simply stops at the first position the rest matches at, wherever it started, as if rewritten to {@code (!rest body)* rest}. The result at every position it passes is therefore memoized, so scans from neighbouring positions share their iterations instead of repeating them.
+  */
+  private Result tail (List<Rule.Entry> entries, int index, int pos) {
+    Object[] keys = tails.computeIfAbsent(entries, key -> new Object[key.size()]);
+    if (keys[index] == null)
+      keys[index] = new Object();
+    long id = (long) id(keys[index]) << 32;
+    List<Rule.Entry> body = entries.get(index).rule().rules();
+
+    //the positions passed so far, with the captures of the iteration at each of them
+    List<Integer> passed = new ArrayList<>();
+    List<Capture[]> iterations = new ArrayList<>();
+    Result result;
+    while (true) {
+      result = memo.get(id | pos);
+      if (result != null)
+        break;
+      List<Capture> captures = new ArrayList<>();
+      int end = sequence(entries, index + 1, pos, END, captures);
+      if (end != FAIL) {
+        result = new Result(end, captures(captures), null);
+        memo.put(id | pos, result);
+        break;
+      }
+      end = sequence(body, 0, pos, END, captures);
+      if (end == FAIL || end == pos) {
+        result = Result.FAILED;
+        memo.put(id | pos, result);
+        break;
+      }
+      passed.add(pos);
+      iterations.add(captures(captures));
+      pos = end;
+    }
+
+    for (int i = passed.size()-1; i >= 0; i--) {
+      if (result.end != FAIL)
+        result = new Result(result.end, iterations.get(i), result);
+      memo.put(id | passed.get(i), result);
+    }
+    return result;
+  }
+
+  private static Capture[] captures (List<Capture> captures) {
+    return captures.isEmpty() ? NO_CAPTURES : captures.toArray(NO_CAPTURES);
+  }
+
+  /**
+* Matches the Rule of the {@code entry}, wrapping everything captured inside of it into a single Capture if the Entry is named.
+  */
+  private int entry (Rule.Entry entry, int pos, Continuation next, List<Capture> out) {
+    String name = entry.name();
+    if (name == null || name.isEmpty())
+      return match(entry.rule(), pos, next, out);
+
+    listener.groupTested(entry);
+    int mark = out.size();
+    return match(entry.rule(), pos, end -> {
+      List<Capture> inner = out.subList(mark, out.size());
+      Capture[] children = inner.isEmpty() ? NO_CAPTURES : inner.toArray(NO_CAPTURES);
+      inner.clear();
+      out.add(new Capture(entry, pos, end, children));
+      listener.groupMatched(entry, pos, end);
+      int result = next.apply(end);
+      if (result == FAIL) {
+        out.remove(out.size()-1);
+        java.util.Collections.addAll(out, children);
+      }
+      return result;
+    }, out);
+  }
+
+  /**
+* Matches the body as often as possible without ever giving an iteration back.
+  */
+  private int greedy (List<Rule.Entry> body, int pos, int min, List<Capture> out) {
+    int size = out.size();
+    int count = 0;
+    while (true) {
+      int end = sequence(body, 0, pos, END, out);
+      if (end == FAIL)
+        break;
+      count++;
+      if (end == pos)
+        break;
+      pos = end;
+    }
+    if (count < min) {
+      truncate(out, size);
+      return FAIL;
+    }
+    return pos;
+  }
+
+  /**
+* Matches the body as rarely as possible, only matching it again if what follows doesn't match yet.
+  */
+  private int lazy (List<Rule.Entry> body, int pos, int min, Continuation next, List<Capture> out) {
+    int size = out.size();
+    int count = 0;
+    while (true) {
+      if (count >= min) {
+        int end = next.apply(pos);
+        if (end != FAIL)
+          return end;
+      }
+      int end = sequence(body, 0, pos, END, out);
+      if (end == FAIL || (end == pos && count >= min)) {
+        truncate(out, size);
+        return FAIL;
+      }
+      pos = end;
+      count++;
+    }
+  }
+
+  private int leaf (Rule rule, int pos) {
+    String text = rule.text();
+    if (text != null) {
+      int end = pos + text.length();
+      if (end > limit)
+        return FAIL;
+      for (int i = 0; i < text.length(); i++) {
+        if (source.charAt(pos + i) != text.charAt(i))
+          return FAIL;
+      }
+      return end;
+    }
+
+    Matcher matcher = matchers.get(rule);
+    if (matcher == null) {
+      matcher = PatternCache.matcher(rule.pattern(), source);
+      matcher.useTransparentBounds(true);
+      matcher.useAnchoringBounds(false);
+      matchers.put(rule, matcher);
+    }
+    matcher.region(pos, limit);
+    return matcher.lookingAt() ? matcher.end() : FAIL;
+  }
+
+  /**
+* Whether the match of the {@code rule} depends on what follows it, because it may end in a lazy repetition.
+  */
+  private boolean contextual (Rule rule) {
+    Boolean result = contextual.get(rule);
+    if (result != null)
+      return result;
+
+    List<Rule.Entry> entries = rule.rules();
+    boolean value = false;
+    switch (rule.type()) {
+      case ZERO_OR_MORE:
+      case ONE_OR_MORE:
+        value = true;
+        break;
+      case ONE_OF:
+        for (Rule.Entry entry : entries)
+          value |= contextual(entry.rule());
+        break;
+      case SEQUENCE:
+        for (int i = entries.size()-1; i >= 0; i--) {
+          Rule entry = entries.get(i).rule();
+          if (contextual(entry)) {
+            value = true;
+            break;
+          }
+          if (!nullable(entry))
+            break;
+        }
+        break;
+      default:
+    }
+    contextual.put(rule, value);
+    return value;
+  }
+
+  /**
+* Whether the {@code rule} can match without consuming anything.
+  */
+  private boolean nullable (Rule rule) {
+    Boolean result = nullable.get(rule);
+    if (result != null)
+      return result;
+
+    List<Rule.Entry> entries = rule.rules();
+    boolean value;
+    switch (rule.type()) {
+      case TEXT:
+        value = rule.text().isEmpty();
+        break;
+      case OPTIONAL:
+      case ZERO_OR_MORE:
+      case MORE_OR_ZERO:
+      case ALL_OR_ZERO:
+        value = true;
+        break;
+      case ONE_OF:
+        value = false;
+        for (Rule.Entry entry : entries)
+          value |= nullable(entry.rule());
+        break;
+      default:
+        if (entries.isEmpty()) {
+          value = rule.pattern().matcher("").matches();
+        } else {
+          value = true;
+          for (Rule.Entry entry : entries)
+            value &= nullable(entry.rule());
+        }
+    }
+    nullable.put(rule, value);
+    return value;
+  }
+
+  /**
+* Returns the {@link Dispatch} table of a ONE_OF {@code rule}, so only the alternatives that can match at a position are tried there.
+  */
+  private Dispatch dispatch (Rule rule) {
+    Dispatch dispatch = dispatches.get(rule);
+    if (dispatch == null) {
+      dispatch = Dispatch.of(rule);
+      dispatches.put(rule, dispatch);
+    }
+    return dispatch;
+  }
+
+  /**
+* Returns the {@link Trie} of a keyword ONE_OF {@code rule}, or null for any other ONE_OF.
+  */
+  private Trie trie (Rule rule) {
+    if (tries.containsKey(rule))
+      return tries.get(rule);
+    Trie trie = Trie.of(rule);
+    tries.put(rule, trie);
+    return trie;
+  }
+
+  private int id (Object key) {
+    Integer id = ids.get(key);
+    if (id == null) {
+      id = ids.size();
+      ids.put(key, id);
+    }
+    return id;
+  }
+
+  private static void truncate (List<Capture> captures, int size) {
+    if (captures.size() > size)
+      captures.subList(size, captures.size()).clear();
+  }
+}
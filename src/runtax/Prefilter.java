@@ -0,0 +1,321 @@
+package runtax;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import java.util.List;
+import java.util.ArrayList;
+
+import java.util.Map;
+import java.util.HashMap;
+import java.util.WeakHashMap;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+* Finds the offsets a match of a Rule can start at, so a scan like {@link java.util.regex.Matcher#find()} only has to try those.
+* <p>If every match of the Rule starts with one of a few literals, found via its {@link Rule.Type#TEXT} leaves, the source is searched for them: for a single literal via Boyer-Moore-Horspool, for several via Aho-Corasick. Otherwise, if the Rule can't start with every char, the source is scanned for the chars of its FIRST set (see {@link RuleAnalysis}). Rules that can match empty can match anywhere and have no Prefilter.
+* <p>Prefilters are immutable and shared by every parse, keyed by their Rule, which is only held weakly.
+*/
+abstract class Prefilter {
+
+  private static final int ASCII = 128;
+
+  /**
+* The maximum number of literals searched for at once.
+  */
+  private static final int MAX_LITERALS = 256;
+
+  private static final Prefilter NONE = new Prefilter() {
+    @Override
+    int next (CharSequence source, int from, int to) {
+      return from;
+    }
+  };
+
+  private static final Map<Rule, Prefilter> prefilters = Collections.synchronizedMap(new WeakHashMap<>());
+
+  /**
+* Returns the Prefilter of the given {@code rule}.
+* @return the Prefilter, or null if every offset has to be tried
+  */
+  static Prefilter of (Rule rule) {
+    Prefilter prefilter = prefilters.computeIfAbsent(rule, Prefilter::build);
+    return prefilter == NONE ? null : prefilter;
+  }
+
+  private static Prefilter build (Rule rule) {
+    if (RuleAnalysis.nullable(rule))
+      return NONE;
+
+    Set<String> literals = literals(rule);
+    if (literals != null) {
+      //a literal starting with another one only ever starts where that one does
+      List<String> minimal = new ArrayList<>();
+      for (String literal : literals) {
+        if (minimal.isEmpty() || !literal.startsWith(minimal.get(minimal.size()-1)))
+          minimal.add(literal);
+      }
+      if (minimal.size() == 1 && minimal.get(0).length() > 1)
+        return new Horspool(minimal.get(0));
+      if (minimal.size() > 1 && minimal.get(0).length() > 1)
+        return new AhoCorasick(minimal);
+    }
+
+    CharSet first = RuleAnalysis.first(rule);
+    if (first.size() == CharSet.ALL.size())
+      return NONE;
+    return new Chars(first);
+  }
+
+  /**
+* Returns the sorted literals every non-empty match of the {@code rule} starts with one of, or null if there are none or too many.
+  */
+  private static Set<String> literals (Rule rule) {
+    List<Rule.Entry> entries = rule.rules();
+    switch (rule.type()) {
+      case TEXT:
+        return rule.text().isEmpty() ? null : new TreeSet<>(List.of(rule.text()));
+      case REGEX:
+        return null;
+      case ONE_OF:
+        Set<String> union = new TreeSet<>();
+        for (Rule.Entry entry : entries) {
+          Set<String> literals = literals(entry.rule());
+          if (literals == null)
+            return null;
+          union.addAll(literals);
+        }
+        return union.size() > MAX_LITERALS ? null : union;
+      default:
+        return literals(entries, 0);
+    }
+  }
+
+  /**
+* Returns the literals of the sequence of the {@code entries} from {@code index} on.
+  */
+  private static Set<String> literals (List<Rule.Entry> entries, int index) {
+    if (index == entries.size())
+      return null;
+    Rule rule = entries.get(index).rule();
+    Set<String> literals = literals(rule);
+    if (literals == null || !RuleAnalysis.nullable(rule))
+      return literals;
+    Set<String> rest = literals(entries, index + 1);
+    if (rest == null)
+      return null;
+    literals.addAll(rest);
+    return literals.size() > MAX_LITERALS ? null : literals;
+  }
+
+  /**
+* Returns the first offset in [{@code from}, {@code to}) a match can start at. The literal a match starts with may run past {@code to}, up to the end of the {@code source}.
+* @param source The source
+* @param from The first offset to consider
+* @param to The end of the range of offsets
+* @return the offset, or -1 if there is none
+  */
+  abstract int next (CharSequence source, int from, int to);
+
+  /**
+* Skips to the next char in a FIRST set.
+  */
+  private static final class Chars extends Prefilter {
+    private final boolean[] ascii = new boolean[ASCII];
+    private final CharSet chars;
+
+    private Chars (CharSet chars) {
+      this.chars = chars;
+      for (int c = 0; c < ASCII; c++)
+        ascii[c] = chars.contains((char) c);
+    }
+
+    @Override
+    int next (CharSequence source, int from, int to) {
+      for (int pos = from; pos < to; pos++) {
+        char c = source.charAt(pos);
+        if (c < ASCII ? ascii[c] : chars.contains(c))
+          return pos;
+      }
+      return -1;
+    }
+  }
+
+  /**
+* Searches for a single literal, skipping ahead by the distance of the last char of every window from the end of the literal.
+  */
+  private static final class Horspool extends Prefilter {
+    private final String literal;
+    private final int[] shifts = new int[ASCII];
+    private final int otherShift;
+
+    private Horspool (String literal) {
+      this.literal = literal;
+      int last = literal.length() - 1;
+      Arrays.fill(shifts, literal.length());
+      int otherShift = literal.length();
+      for (int i = 0; i < last; i++) {
+        char c = literal.charAt(i);
+        if (c < ASCII)
+          shifts[c] = last - i;
+        else
+          otherShift = Math.min(otherShift, last - i);
+      }
+      //non-ASCII chars share a single shift, the smallest of any of them in the literal
+      this.otherShift = otherShift;
+    }
+
+    @Override
+    int next (CharSequence source, int from, int to) {
+      int last = literal.length() - 1;
+      int length = source.length();
+      for (int pos = from; pos < to && pos + last < length; ) {
+        char c = source.charAt(pos + last);
+        int i = last;
+        while (i >= 0 && source.charAt(pos + i) == literal.charAt(i))
+          i--;
+        if (i < 0)
+          return pos;
+        pos += c < ASCII ? shifts[c] : otherShift;
+      }
+      return -1;
+    }
+  }
+
+  /**
+* Searches for several literals at once with an Aho-Corasick automaton.
+  */
+  private static final class AhoCorasick extends Prefilter {
+
+    /**
+* The transitions of every state: for ASCII chars in a table, for all others in a map.
+    */
+    private final int[][] ascii;
+    private final List<Map<Character, Integer>> others;
+
+    private final int[] fail;
+
+    /**
+* The length of the longest literal ending in every state, or 0, which is the one starting first.
+    */
+    private final int[] matched;
+    private final int longest;
+
+    private AhoCorasick (List<String> literals) {
+      List<int[]> ascii = new ArrayList<>();
+      List<Map<Character, Integer>> others = new ArrayList<>();
+      List<Integer> matched = new ArrayList<>();
+      ascii.add(new int[ASCII]);
+      others.add(new HashMap<>());
+      matched.add(0);
+
+      //the trie of all literals, with 0 for missing transitions
+      int longest = 0;
+      for (String literal : literals) {
+        longest = Math.max(longest, literal.length());
+        int state = 0;
+        for (int i = 0; i < literal.length(); i++) {
+          char c = literal.charAt(i);
+          int next = c < ASCII ? ascii.get(state)[c] : others.get(state).getOrDefault(c, 0);
+          if (next == 0) {
+            next = ascii.size();
+            ascii.add(new int[ASCII]);
+            others.add(new HashMap<>());
+            matched.add(0);
+            if (c < ASCII)
+              ascii.get(state)[c] = next;
+            else
+              others.get(state).put(c, next);
+          }
+          state = next;
+        }
+        matched.set(state, literal.length());
+      }
+
+      //fail links in breadth-first order, turning the trie into a complete automaton for ASCII
+      int[] fail = new int[ascii.size()];
+      List<Integer> queue = new ArrayList<>();
+      for (int c = 0; c < ASCII; c++) {
+        if (ascii.get(0)[c] != 0)
+          queue.add(ascii.get(0)[c]);
+      }
+      queue.addAll(others.get(0).values());
+      for (int head = 0; head < queue.size(); head++) {
+        int state = queue.get(head);
+        int link = fail[state];
+        //a literal ending in the state itself is longer than any of its suffixes
+        if (matched.get(state) == 0)
+          matched.set(state, matched.get(link));
+        for (int c = 0; c < ASCII; c++) {
+          int next = ascii.get(state)[c];
+          if (next == 0) {
+            ascii.get(state)[c] = ascii.get(link)[c];
+          } else {
+            fail[next] = ascii.get(link)[c];
+            queue.add(next);
+          }
+        }
+        for (Map.Entry<Character, Integer> entry : others.get(state).entrySet()) {
+          fail[entry.getValue()] = transition(ascii, others, fail, link, entry.getKey());
+          queue.add(entry.getValue());
+        }
+      }
+
+      this.ascii = ascii.toArray(new int[0][]);
+      this.others = others;
+      this.fail = fail;
+      this.longest = longest;
+      this.matched = new int[matched.size()];
+      for (int i = 0; i < this.matched.length; i++)
+        this.matched[i] = matched.get(i);
+    }
+
+    private static int transition (List<int[]> ascii, List<Map<Character, Integer>> others, int[] fail, int state, char c) {
+      while (true) {
+        Integer next = others.get(state).get(c);
+        if (next != null)
+          return next;
+        if (state == 0)
+          return 0;
+        state = fail[state];
+      }
+    }
+
+    @Override
+    int next (CharSequence source, int from, int to) {
+      int state = 0;
+      int best = -1;
+      //a literal starting before to may end up to the length of the longest one after it
+      int stop = (int) Math.min(source.length(), (long) to + longest - 1);
+      for (int pos = from; pos < stop; pos++) {
+        //no literal starting before the best one found so far can end after this
+        if (best >= 0 && pos >= best + longest)
+          break;
+        char c = source.charAt(pos);
+        if (c < ASCII) {
+          state = ascii[state][c];
+        } else {
+          while (true) {
+            Integer next = others.get(state).get(c);
+            if (next != null) {
+              state = next;
+              break;
+            }
+            if (state == 0)
+              break;
+            state = fail[state];
+          }
+        }
+        int length = matched[state];
+        if (length > 0) {
+          int start = pos - length + 1;
+          if (start < to && (best < 0 || start < best))
+            best = start;
+        }
+      }
+      return best;
+    }
+  }
+}
@@ -0,0 +1,333 @@
+package runtax;
+
+import java.io.PrintStream;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import java.util.List;
+import java.util.ArrayList;
+
+import java.util.Map;
+import java.util.IdentityHashMap;
+
+/**
+* A {@link ParseListener} attributing the cost of parses to the Rules of their grammar: how often every Rule was tried, how often it matched, how often it failed after reading input, and how many chars it read.
+* <p>Chars are counted by matching a view of the source that counts every char read, including the reads of lookarounds, backtracking and prefilters. Every char is charged to the innermost Rule being tried when it's read ({@link Stats#chars()}), and to every Rule around it ({@link Stats#totalChars()}).
+* <p>The {@link ParseOptions.Engine#PEG} engine tries every Rule on its own, so the cost of every part of a grammar shows up separately. Attempts answered from its memo cost nothing and aren't counted, and Rules ending in a lazy repetition only show up through their parts. The {@link ParseOptions.Engine#REGEX} engine matches a Rule with everything within it as a single regex, so the whole cost is charged to the Rule it scans for.
+<pre>{@code
+Profiler profiler = new Profiler(ruleMap);
+Parser.parseSource(source, ruleMap, ParseOptions.DEFAULT.engine(ParseOptions.Engine.PEG).listener(profiler));
+profiler.report(System.out);
+}</pre>
+* <p>Profiling slows a parse down several times over. A Profiler may be shared by parallel parses, as every thread counts on its own; the counts are summed up once asked for, which has to wait until the parses are done.
+*/
+public final class Profiler implements ParseListener {
+
+  private final Map<Rule, String> names = new IdentityHashMap<>();
+
+  private final List<Counter> counters = new ArrayList<>();
+  private final ThreadLocal<Counter> counter = ThreadLocal.withInitial(this::counter);
+
+  /**
+* Creates a Profiler naming Rules by the named Entries they are matched through.
+  */
+  public Profiler () {}
+
+  /**
+* Creates a Profiler naming the Rules of the {@code ruleMap} by their names in it, and every other Rule by the named Entries it is matched through.
+* @param ruleMap The RuleMap
+  */
+  public Profiler (RuleMap ruleMap) {
+    for (Map.Entry<String, Rule> rule : ruleMap.rules().entrySet())
+      names.putIfAbsent(rule.getValue(), rule.getKey());
+  }
+
+  @Override
+  public CharSequence source (CharSequence source) {
+    return new Counting(source, counter.get());
+  }
+
+  @Override
+  public void attemptStarted (Rule rule, int pos) {
+    counter.get().push(rule);
+  }
+
+  @Override
+  public void attemptEnded (Rule rule, int pos, int end) {
+    counter.get().pop(end >= 0);
+  }
+
+  @Override
+  public void groupTested (Rule.Entry entry) {
+    Map<Rule, String> names = counter.get().names;
+    if (!names.containsKey(entry.rule()))
+      names.put(entry.rule(), entry.name());
+  }
+
+  /**
+* Returns the Stats of every Rule tried so far, the Rule that read the most chars itself first.
+* @return the Stats
+  */
+  public List<Stats> stats () {
+    Map<Rule, Stats> stats = new IdentityHashMap<>();
+    synchronized (counters) {
+      for (Counter counter : counters) {
+        for (Map.Entry<Rule, long[]> count : counter.counts.entrySet())
+          stats.computeIfAbsent(count.getKey(), rule -> new Stats(rule, name(rule))).add(count.getValue());
+      }
+    }
+    List<Stats> sorted = new ArrayList<>(stats.values());
+    sorted.sort(Comparator.comparingLong(Stats::chars).thenComparingLong(Stats::attempts).reversed());
+    return sorted;
+  }
+
+  /**
+* Prints the {@link #stats()} of every Rule as a table, the Rule that read the most chars itself first.
+* @param out The stream to print to
+  */
+  public void report (PrintStream out) {
+    report(out, Integer.MAX_VALUE);
+  }
+
+  /**
+* Prints the {@link #stats()} of the {@code limit} Rules that read the most chars themselves as a table.
+* @param out The stream to print to
+* @param limit The maximum number of Rules to print
+  */
+  public void report (PrintStream out, int limit) {
+    List<Stats> stats = stats();
+    long chars = 0;
+    long attempts = 0;
+    for (Stats rule : stats) {
+      chars += rule.chars;
+      attempts += rule.attempts;
+    }
+    out.println("Read " + chars + " chars in " + attempts + " attempts of " + stats.size() + " Rules");
+    out.println(String.format("%7s %12s %12s %10s %10s %10s  %s", "self%", "self", "total", "attempts", "matches", "backtracks", "rule"));
+    for (Stats rule : stats.subList(0, Math.min(limit, stats.size()))) {
+      double share = chars == 0 ? 0 : 100.0 * rule.chars / chars;
+      out.println(String.format("%6.1f%% %12d %12d %10d %10d %10d  %s", share, rule.chars, rule.totalChars, rule.attempts, rule.matches, rule.backtracks, rule.name));
+    }
+  }
+
+  /**
+* Forgets everything counted so far, including the Rules still being tried by a parse that was aborted. Must not be called while a parse is running.
+  */
+  public void reset () {
+    synchronized (counters) {
+      for (Counter counter : counters)
+        counter.reset();
+    }
+  }
+
+  private Counter counter () {
+    Counter counter = new Counter();
+    synchronized (counters) {
+      counters.add(counter);
+    }
+    return counter;
+  }
+
+  /**
+* Returns how the {@code rule} is shown in the report: its name, followed by its type and the start of its regex.
+  */
+  private String name (Rule rule) {
+    String name = names.get(rule);
+    if (name == null) {
+      for (Counter counter : counters) {
+        name = counter.names.get(rule);
+        if (name != null)
+          break;
+      }
+    }
+    String regex = rule.regex();
+    if (regex.length() > 60)
+      regex = regex.substring(0, 57) + "...";
+    return (name == null || name.isEmpty() ? "" : name + " ") + rule.type() + " " + regex;
+  }
+
+  /**
+* What a Profiler counted for a single Rule.
+  */
+  public static final class Stats {
+    private final Rule rule;
+    private final String name;
+    private long attempts;
+    private long matches;
+    private long backtracks;
+    private long chars;
+    private long totalChars;
+
+    private Stats (Rule rule, String name) {
+      this.rule = rule;
+      this.name = name;
+    }
+
+    private void add (long[] count) {
+      attempts += count[Counter.ATTEMPTS];
+      matches += count[Counter.MATCHES];
+      backtracks += count[Counter.BACKTRACKS];
+      chars += count[Counter.CHARS];
+      totalChars += count[Counter.TOTAL_CHARS];
+    }
+
+    public Rule rule () {
+      return rule;
+    }
+
+    /**
+* Returns how the Rule is shown in the report: its name if it has one, its type and the start of its regex.
+    */
+    public String name () {
+      return name;
+    }
+
+    /**
+* Returns how often the Rule was tried.
+    */
+    public long attempts () {
+      return attempts;
+    }
+
+    /**
+* Returns how often the Rule matched.
+    */
+    public long matches () {
+      return matches;
+    }
+
+    /**
+* Returns how often the Rule failed after reading input, which the parse had to go back on.
+    */
+    public long backtracks () {
+      return backtracks;
+    }
+
+    /**
+* Returns the number of chars read while the Rule was the innermost Rule being tried.
+    */
+    public long chars () {
+      return chars;
+    }
+
+    /**
+* Returns the number of chars read while the Rule was being tried, including by the Rules within it.
+    */
+    public long totalChars () {
+      return totalChars;
+    }
+
+    @Override
+    public String toString () {
+      return name + ": " + attempts + " attempts, " + matches + " matches, " + backtracks + " backtracks, " + chars + " chars, " + totalChars + " in total";
+    }
+  }
+
+  /**
+* The counts of a single thread, with the stack of the Rules it is trying.
+  */
+  private static final class Counter {
+    private static final int ATTEMPTS = 0;
+    private static final int MATCHES = 1;
+    private static final int BACKTRACKS = 2;
+    private static final int CHARS = 3;
+    private static final int TOTAL_CHARS = 4;
+
+    private final Map<Rule, long[]> counts = new IdentityHashMap<>();
+    private final Map<Rule, String> names = new IdentityHashMap<>();
+
+    /**
+* The number of chars read so far.
+    */
+    private long chars;
+
+    /**
+* The Rules being tried, with the chars read before each of them and by the Rules within it.
+    */
+    private Rule[] rules = new Rule[16];
+    private long[] starts = new long[16];
+    private long[] inner = new long[16];
+    private int depth;
+
+    private void push (Rule rule) {
+      if (depth == rules.length) {
+        rules = Arrays.copyOf(rules, depth * 2);
+        starts = Arrays.copyOf(starts, depth * 2);
+        inner = Arrays.copyOf(inner, depth * 2);
+      }
+      rules[depth] = rule;
+      starts[depth] = chars;
+      inner[depth] = 0;
+      depth++;
+    }
+
+    private void pop (boolean matched) {
+      depth--;
+      Rule rule = rules[depth];
+      rules[depth] = null;
+      long read = chars - starts[depth];
+
+      long[] count = counts.computeIfAbsent(rule, key -> new long[5]);
+      count[ATTEMPTS]++;
+      if (matched)
+        count[MATCHES]++;
+      else if (read > 0)
+        count[BACKTRACKS]++;
+      count[CHARS] += read - inner[depth];
+      //a recursive Rule only counts the chars of its outermost attempt
+      if (!tried(rule))
+        count[TOTAL_CHARS] += read;
+      if (depth > 0)
+        inner[depth-1] += read;
+    }
+
+    private void reset () {
+      counts.clear();
+      Arrays.fill(rules, 0, depth, null);
+      depth = 0;
+    }
+
+    private boolean tried (Rule rule) {
+      for (int i = 0; i < depth; i++) {
+        if (rules[i] == rule)
+          return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+* A view of a source counting every char read from it.
+  */
+  private static final class Counting implements CharSequence {
+    private final CharSequence source;
+    private final Counter counter;
+
+    private Counting (CharSequence source, Counter counter) {
+      this.source = source;
+      this.counter = counter;
+    }
+
+    @Override
+    public char charAt (int index) {
+      counter.chars++;
+      return source.charAt(index);
+    }
+
+    @Override
+    public int length () {
+      return source.length();
+    }
+
+    @Override
+    public CharSequence subSequence (int start, int end) {
+      return new Counting(source.subSequence(start, end), counter);
+    }
+
+    @Override
+    public String toString () {
+      return source.toString();
+    }
+  }
+}
@@ -0,0 +1,168 @@
+package runtax;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+import java.time.Duration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+* Holds the {@link ParsedRuleMap} of a rule file and reloads it whenever the file changes.
+* <p>The file is watched via a {@link WatchService} on a background thread. Bursts of changes, like an editor saving in several steps, are debounced: the file is only reloaded once it didn't change for the debounce time. The new ParsedRuleMap is built on the same background thread via {@link ParsedRuleMap#update(java.io.File)}, so only the changed lines are parsed again, and the Patterns of all its Rules are compiled before it replaces the current one.
+* <p>Every ParsedRuleMap is immutable. {@link #current()} is a single volatile read, so readers never wait for a reload, and a parse that got a ParsedRuleMap keeps using that consistent snapshot even if a newer one is swapped in meanwhile:
+<pre>{@code
+ReloadingRuleMap rules = new ReloadingRuleMap(Paths.get("rules.txt"), ParserRuleMap.instance());
+...
+ParsedRuleMap snapshot = rules.current();
+Parser.parseSource(source, snapshot);
+}</pre>
+* <p>If a reload fails, the current ParsedRuleMap is kept and the failure is available via {@link #failure()} until the next successful reload.
+*/
+public final class ReloadingRuleMap implements Closeable {
+
+  /**
+* The debounce time of {@link #ReloadingRuleMap(Path, RuleMap)}.
+  */
+  public static final Duration DEBOUNCE = Duration.ofMillis(200);
+
+  private final Path file;
+  private final long debounce;
+  private final WatchService watcher;
+  private final Thread thread;
+
+  /**
+* Serializes reloads, never taken by readers.
+  */
+  private final Object reloading = new Object();
+
+  private volatile ParsedRuleMap current;
+  private volatile Exception failure;
+
+  public ReloadingRuleMap (Path file, RuleMap ruleMap) throws IOException {
+    this(file, ruleMap, ParseOptions.DEFAULT, DEBOUNCE);
+  }
+
+  /**
+* Parses the {@code file} and starts watching it.
+  * @param file The rule file
+  * @param ruleMap The RuleMap defining the format of the file
+  * @param options The options every version of the file is parsed with
+  * @param debounce How long the file has to stay unchanged before it's reloaded
+  * @throws IOException if the file can't be read or watched
+  */
+  public ReloadingRuleMap (Path file, RuleMap ruleMap, ParseOptions options, Duration debounce) throws IOException {
+    this.file = file.toAbsolutePath();
+    this.debounce = debounce.toNanos();
+    this.current = precompile(new ParsedRuleMap(this.file.toFile(), ruleMap, options));
+    this.watcher = FileSystems.getDefault().newWatchService();
+    try {
+      this.file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    } catch (IOException ioe) {
+      watcher.close();
+      throw ioe;
+    }
+    this.thread = new Thread(this::watch, "runtax-reload-" + this.file.getFileName());
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+* Returns the ParsedRuleMap of the latest version of the file that was loaded successfully.
+* @return the current ParsedRuleMap
+  */
+  public ParsedRuleMap current () {
+    return current;
+  }
+
+  /**
+* Returns why the latest reload failed.
+* @return the failure, or null if the latest reload succeeded
+  */
+  public Exception failure () {
+    return failure;
+  }
+
+  /**
+* Reloads the file right away on the calling thread, without waiting for the watcher.
+* @return the new current ParsedRuleMap
+* @throws IOException if the file can't be read, in which case the current ParsedRuleMap is kept
+  */
+  public ParsedRuleMap reload () throws IOException {
+    synchronized (reloading) {
+      try {
+        ParsedRuleMap next = precompile(current.update(file.toFile()));
+        current = next;
+        failure = null;
+        return next;
+      } catch (IOException | RuntimeException e) {
+        failure = e;
+        throw e;
+      }
+    }
+  }
+
+  /**
+* Stops watching the file. The current ParsedRuleMap stays available.
+  */
+  @Override
+  public void close () throws IOException {
+    watcher.close();
+  }
+
+  /**
+* Compiles the Pattern of every Rule, so the first parses after a swap don't have to. Rules shared with the previous ParsedRuleMap already have theirs.
+  */
+  private static ParsedRuleMap precompile (ParsedRuleMap ruleMap) {
+    for (Rule rule : ruleMap.rules().values())
+      rule.pattern();
+    return ruleMap;
+  }
+
+  private void watch () {
+    try {
+      while (true) {
+        if (!changed(watcher.take()))
+          continue;
+        long quiet = System.nanoTime() + debounce;
+        for (long left = debounce; left > 0; left = quiet - System.nanoTime()) {
+          WatchKey key = watcher.poll(left, TimeUnit.NANOSECONDS);
+          if (key != null && changed(key))
+            quiet = System.nanoTime() + debounce;
+        }
+        //the file may be gone for a moment while it's replaced, its creation triggers another reload
+        if (Files.exists(file)) {
+          try {
+            reload();
+          } catch (IOException | RuntimeException e) {
+            //kept in failure
+          }
+        }
+      }
+    } catch (ClosedWatchServiceException | InterruptedException e) {
+      //closed
+    }
+  }
+
+  /**
+* Whether any event of the {@code key} concerns the watched file. Resets the key.
+  */
+  private boolean changed (WatchKey key) {
+    boolean changed = false;
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context()))
+        changed = true;
+    }
+    key.reset();
+    return changed;
+  }
+}
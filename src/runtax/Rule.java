@@ -1,20 +1,56 @@
 package runtax;
 
+import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Objects;
 
-import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import java.util.Set;
+import java.util.HashSet;
+
+import java.lang.ref.WeakReference;
+
+import java.io.Reader;
+
+import java.nio.channels.ReadableByteChannel;
+
+import java.nio.charset.Charset;
+
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
+
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
-* 
+* A Rule to match, either a regex or text leaf, or a composition of other Rules via {@link Entry Entries}.
+* <p>Rules are immutable and can be shared freely between threads. Their regex and Pattern are only computed on first use; racing threads may compute them more than once, but always to the same result.
+* <p>A {@link Type#ONE_OF} of only unnamed {@link Type#TEXT} Rules is compiled into a prefix trie of its keywords (see {@link Trie}) and prefers the longest one that matches, regardless of the order of its alternatives.
+* <p>Rules are equal if they have the same structure: the same type and text or regex, and equal Entries in the same order. Every Rule built via {@link Builder} is interned, so structurally equal Rules are the same instance across all RuleMaps, sharing a single regex and Pattern. Interned Rules are only held weakly and vanish once no RuleMap uses them anymore.
 */
 
 public class Rule {
+  //racy single-check caches, safe because Strings, immutable Lists, CharSets and ints are
   private String regex;
   private String namedRegex;
-  private Type type;
-  private ArrayList<Entry> rules;
-
-  private enum Type {
+  private List<Group> groups;
+  private int groupCount = -1;
+  private volatile Pattern pattern;
+  private CharSet chars;
+  private final String text;
+  private final Type type;
+  private final List<Entry> rules;
+  private final int hash;
+
+  /**
+* Every Rule built so far, each as the key of a weak reference to itself, so it can be found by any Rule equal to it.
+  */
+  private static final Map<Rule, WeakReference<Rule>> interned = new WeakHashMap<>();
+
+  public enum Type {
     UNKNOWN ("", ""),
     REGEX ("", ""),
     TEXT ("\\Q", "\\E"),
@@ -24,7 +60,10 @@ public class Rule {
     ZERO_OR_MORE ("", "*?"),
     ONE_OR_MORE ("", "+?"),
     MORE_OR_ZERO ("", "*"),
-    MORE_OR_ONE ("", "+");
+    MORE_OR_ONE ("", "+"),
+    ALL_OR_ZERO ("", "*+"),
+    ALL_OR_ONE ("", "++"),
+    ATOMIC ("?>", "");
 
     private String start;
     private String end;
@@ -44,74 +83,313 @@ public class Rule {
   }
 
   private Rule (String regex, Type type) {
-    if (type == Type.TEXT)
+    if (type == Type.TEXT) {
+      this.text = regex;
       regex = "\\Q" + regex + "\\E";
+    } else {
+      this.text = null;
+    }
     this.regex = regex;
     this.namedRegex = regex;
     this.type = type;
+    this.rules = null;
+    this.hash = 31 * type.ordinal() + (text != null ? text : regex).hashCode();
   }
 
   private Rule (Type type, Entry... entries) throws NullPointerException {
     if (entries == null)
       throw new NullPointerException();
-    this.rules = new ArrayList<>(java.util.Arrays.asList(entries));
+    this.rules = List.of(entries);
     this.type = type;
-    assemble();
+    this.text = null;
+    this.hash = 31 * type.ordinal() + rules.hashCode();
   }
-  
-  private Rule (Rule rule) {
-    regex = rule.regex;
-    namedRegex = rule.namedRegex;
-    type = rule.type;
-    rules = new ArrayList<>(rule.rules);
+
+  /**
+* Returns the interned Rule of the given {@code type} composed of the {@code entries}.
+  */
+  static Rule of (Type type, Entry... entries) throws NullPointerException {
+    return intern(new Rule(type, entries));
   }
 
+  /**
+* Returns the interned Rule equal to the given {@code rule}, which becomes the interned one if there is none yet.
+  */
+  private static Rule intern (Rule rule) {
+    synchronized (interned) {
+      WeakReference<Rule> reference = interned.get(rule);
+      Rule existing = reference == null ? null : reference.get();
+      if (existing != null)
+        return existing;
+      interned.put(rule, new WeakReference<>(rule));
+      return rule;
+    }
+  }
+
+  /**
+* Returns the regex of this Rule. Assembled on first use, so building a Rule from many parts never assembles the regex of the intermediate Rules.
+* @return the regex
+  */
   public String regex () {
+    String regex = this.regex;
+    if (regex == null) {
+      StringBuilder builder = new StringBuilder();
+      assemble(builder);
+      this.regex = regex = builder.toString();
+    }
     return regex;
   }
 
+  /**
+* Returns the regex of this Rule with a named group for every named Entry, and within those for every named Entry of their Rules, and so on. Assembled on first use.
+* <p>Group names are unique within the regex: nested groups are qualified by the names of the groups around them, like {@code commentContent} for the Entry {@code content} within {@code comment}, letters and digits are kept only, and a number is appended if the name is still taken.
+* @return the named regex
+  */
   public String namedRegex () {
+    String namedRegex = this.namedRegex;
+    if (namedRegex == null) {
+      assembleNamed();
+      namedRegex = this.namedRegex;
+    }
     return namedRegex;
   }
 
+  /**
+* Returns the groups of the named Entries of this Rule in its {@link #pattern()}, each with the groups of the named Entries of its Rule.
+  */
+  List<Group> groups () {
+    if (rules == null)
+      return Collections.emptyList();
+    List<Group> groups = this.groups;
+    if (groups == null) {
+      assembleNamed();
+      groups = this.groups;
+    }
+    return groups;
+  }
+
+  private void assembleNamed () {
+    StringBuilder builder = new StringBuilder();
+    List<Group> groups = new ArrayList<>();
+    assemble(builder, null, new HashSet<>(), 0, groups);
+    //the groups are always set before the regex, so a thread seeing the regex sees them too
+    this.groups = List.copyOf(groups);
+    this.namedRegex = builder.toString();
+  }
+
+  /**
+* Returns the number of capturing groups in the {@link #regex()} of this Rule.
+  */
+  private int groupCount () {
+    int groupCount = this.groupCount;
+    if (groupCount < 0) {
+      if (type == Type.REGEX) {
+        groupCount = PatternCache.compile(regex).matcher("").groupCount();
+      } else if (rules == null) {
+        groupCount = 0;
+      } else {
+        groupCount = capturing() ? 1 : 0;
+        for (Entry entry : rules)
+          groupCount += entry.rule().groupCount();
+      }
+      this.groupCount = groupCount;
+    }
+    return groupCount;
+  }
+
+  /**
+* Whether the parentheses around a composite Rule form a capturing group.
+  */
+  private boolean capturing () {
+    return !type.start().startsWith("?");
+  }
+
+  /**
+* Returns the chars a match of this regex leaf can start with, probed via {@link RuleAnalysis#probe(Rule)} on first use and kept by this Rule, so they are dropped along with it.
+  */
+  CharSet chars () {
+    CharSet chars = this.chars;
+    if (chars == null)
+      this.chars = chars = RuleAnalysis.probe(this);
+    return chars;
+  }
+
+  /**
+* Returns the compiled Pattern of the {@link #namedRegex()} of this Rule, shared through the {@link PatternCache} and kept by this Rule after the first call.
+* @return the compiled Pattern
+  */
+  public Pattern pattern () {
+    Pattern pattern = this.pattern;
+    if (pattern == null)
+      this.pattern = pattern = PatternCache.compile(namedRegex());
+    return pattern;
+  }
+
+  /**
+* Returns a lazy Stream of the matches of this Rule in the {@code input}, as found by {@link java.util.regex.Matcher#find()} over its {@link #pattern()}, so their groups are those of the {@link #namedRegex()}.
+* <p>Matches are found only as the Stream is consumed, and each one only holds the offsets of its groups, reading their text from the {@code input} when asked for it. The {@code input} must therefore not change while the Stream and its matches are in use.
+* <p>A parallel Stream splits the {@code input} right after line terminators, scans the parts concurrently and scans again from the end of every match that runs past a split, so it finds the same matches as a sequential one, in the same order. It finds all of them as soon as it is first split, though, rather than as it is consumed.
+* @param input The input to search, which may be a {@link MappedCharSequence}
+* @return the ordered Stream of matches
+  */
+  public Stream<MatchResult> findIn (CharSequence input) {
+    return StreamSupport.stream(new MatchSpliterator(this, input), false);
+  }
+
+  /**
+* Returns a lazy Stream of the matches of this Rule in the {@code input}, read through a sliding window of {@value SlidingWindow#SIZE} chars, so memory stays bounded no matter how long the input is.
+* <p>The matches are the same as in the whole input, as long as every match fits into the window and lookbehinds look back at most {@value SlidingWindow#CONTEXT} chars. Each one holds a copy of the text of its groups. Its offsets are those in the whole input and can't be read beyond {@link Integer#MAX_VALUE} chars, but its text always can.
+* <p>The Stream never splits. Errors reading the {@code input} are thrown as {@link java.io.UncheckedIOException}, just like a match not fitting into the window.
+* @param input The input to search, which is read but not closed
+* @return the ordered Stream of matches
+* @see Parser#parse(Reader, RuleMap, ParseOptions, java.util.function.Consumer)
+  */
+  public Stream<MatchResult> findIn (Reader input) {
+    return StreamSupport.stream(new SlidingWindow(input, this, SlidingWindow.SIZE).spliterator(), false);
+  }
+
+  /**
+* Returns a lazy Stream of the matches of this Rule in the {@code input} decoded with the {@code charset}, like {@link #findIn(Reader)}. Malformed input is decoded as U+FFFD.
+* @param input The input to search, which is read but not closed
+* @param charset The charset of the input
+* @return the ordered Stream of matches
+  */
+  public Stream<MatchResult> findIn (ReadableByteChannel input, Charset charset) {
+    return findIn(Parser.reader(input, charset));
+  }
+
   public Type type () {
     return type;
   }
 
-  public java.util.List<Entry> rules () {
-    return java.util.Collections.unmodifiableList(rules);
+  /**
+* Returns the literal text of a {@link Type#TEXT} Rule.
+* @return the text, or null if this isn't a TEXT Rule
+  */
+  public String text () {
+    return text;
   }
 
-  private void assemble () {
-    this.regex = "(" + type.start();
-    this.namedRegex = "(" + type.start();
-    
+  public List<Entry> rules () {
+    if (rules == null)
+      return Collections.emptyList();
+    return rules;
+  }
+
+  /**
+* Appends the regex of this Rule to the {@code builder} in a single pass over all contained Rules, reusing their regex if it was already assembled.
+  */
+  private void assemble (StringBuilder builder) {
+    if (regex != null) {
+      builder.append(regex);
+      return;
+    }
+    if (Trie.applies(this)) {
+      Trie.appendRegex(builder, this);
+      return;
+    }
+
+    builder.append('(').append(type.start());
+
+    int length = rules.size();
+    for (int i = 0; i < length; i++) {
+      rules.get(i).rule().assemble(builder);
+      if (type == Type.ONE_OF && i < length-1)
+        builder.append('|');
+    }
+
+    builder.append(')').append(type.end());
+  }
+
+  /**
+* Appends the named regex of this Rule to the {@code builder}, adding a {@link Group} for every named Entry to the {@code groups}. Unnamed Entries are appended via their plain regex.
+* @param scope The qualified name of the group around this Rule, or null
+* @param names The group names taken so far
+* @param group The number of capturing groups opened before this Rule
+* @return the number of capturing groups opened up to the end of this Rule
+  */
+  private int assemble (StringBuilder builder, String scope, Set<String> names, int group, List<Group> groups) {
+    //a keyword ONE_OF has no named Entries, so its plain regex will do
+    if (rules == null || Trie.applies(this)) {
+      builder.append(regex());
+      return group + groupCount();
+    }
+
+    builder.append('(').append(type.start());
+    if (capturing())
+      group++;
+
     int length = rules.size();
     for (int i = 0; i < length; i++) {
       Entry entry = rules.get(i);
       String name = entry.name();
-      Rule rule = entry.rule();
-      String regex = rule.regex();
-      
-      this.regex += regex;
-      if (name != null && !name.isEmpty())
-        this.namedRegex += "(?<" + name + ">" + regex + ")";
-      else
-        this.namedRegex += regex;
-      
-      if (type == Type.ONE_OF && i < length-1) {
-        this.regex += "|";
-        this.namedRegex += "|";
+
+      if (name != null && !name.isEmpty()) {
+        String qualified = groupName(scope, name, names);
+        builder.append("(?<").append(qualified).append('>');
+        int index = ++group;
+        List<Group> children = new ArrayList<>();
+        group = entry.rule().assemble(builder, qualified, names, group, children);
+        builder.append(')');
+        groups.add(new Group(entry, index, children));
+      } else {
+        entry.rule().assemble(builder);
+        group += entry.rule().groupCount();
       }
+
+      if (type == Type.ONE_OF && i < length-1)
+        builder.append('|');
+    }
+
+    builder.append(')').append(type.end());
+    return group;
+  }
+
+  /**
+* Returns a valid group name for the Entry {@code name} within the group {@code scope} that isn't in the {@code names} yet, and adds it to them.
+  */
+  private static String groupName (String scope, String name, Set<String> names) {
+    StringBuilder builder = new StringBuilder(scope == null ? "" : scope);
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9'))
+        builder.append(scope != null && builder.length() == scope.length() ? Character.toUpperCase(c) : c);
     }
+    if (builder.length() == 0 || !Character.isLetter(builder.charAt(0)))
+      builder.insert(0, 'g');
+    String groupName = builder.toString();
+    for (int i = 2; !names.add(groupName); i++)
+      groupName = builder.toString() + i;
+    return groupName;
+  }
+
+  /**
+* Whether the given {@code object} is a Rule with the same structure as this Rule.
+* @param object The object to compare to
+* @return whether they are equal
+  */
+  @Override
+  public boolean equals (Object object) {
+    if (object == this)
+      return true;
+    if (!(object instanceof Rule))
+      return false;
+    Rule other = (Rule) object;
+    if (hash != other.hash || type != other.type)
+      return false;
+    if (rules == null)
+      return other.rules == null && Objects.equals(text, other.text) && Objects.equals(regex, other.regex);
+    return rules.equals(other.rules);
+  }
 
-    this.regex += ")" + type.end();
-    this.namedRegex += ")" + type.end();
+  @Override
+  public int hashCode () {
+    return hash;
   }
 
   @Override
   public String toString () {
-    return namedRegex;
+    return namedRegex();
   }
 
   public interface Builder {
@@ -119,124 +397,322 @@ public class Rule {
     static Entry entry (String name, Rule rule) {
       return new Entry (name, rule);
     }
+
+    /**
+    * Starts a {@link Chain} with the given {@code rules} as its first unnamed parts.
+    * @param rules The first parts
+    * @return the new Chain
+    */
+    static Chain chain (Rule... rules) {
+      return new Chain().rule(rules);
+    }
+
+    private static Entry[] entries (Rule... rules) {
+      Entry[] entries = new Entry[rules.length];
+      for (int i = 0; i < rules.length; i++)
+        entries[i] = entry ("", rules[i]);
+      return entries;
+    }
     
     static Rule regex (String regex) {
-      return new Rule (regex, Type.REGEX);
+      return intern (new Rule (regex, Type.REGEX));
     }
 
     static Rule text (String text) {
-      return new Rule (text, Type.TEXT);
+      return intern (new Rule (text, Type.TEXT));
     }
 
     static Rule sequence (Rule... rules) {
-      //probably not perfect...
-      return sequence (
-        (Entry[])
-         Arrays
-        .stream(rules)
-        .map(elem -> entry ("", elem))
-        .toArray(Entry[]::new)
-      );
+      return sequence (entries(rules));
     }
 
     static Rule sequence (Entry... entries) {
-      return new Rule (Type.SEQUENCE, entries);
+      return of (Type.SEQUENCE, entries);
     }
 
     static Rule oneOf (Rule... rules) {
-      //probably not perfect...
-      return oneOf (
-        (Entry[])
-         Arrays
-        .stream(rules)
-        .map(elem -> entry ("", elem))
-        .toArray(Entry[]::new)
-      );
+      return oneOf (entries(rules));
     }
 
     static Rule oneOf (Entry... entries) {
-      return new Rule (Type.ONE_OF, entries);
+      return of (Type.ONE_OF, entries);
     }
 
     static Rule optional (Rule... rules) {
-      //probably not perfect...
-      return optional (
-        (Entry[])
-         Arrays
-        .stream(rules)
-        .map(elem -> entry ("", elem))
-        .toArray(Entry[]::new)
-      );
+      return optional (entries(rules));
     }
 
     static Rule optional (Entry... entries) {
-      return new Rule (Type.OPTIONAL, entries);
+      return of (Type.OPTIONAL, entries);
     }
 
     static Rule zeroOrMore (Rule... rules) {
-      //probably not perfect...
-      return zeroOrMore (
-        (Entry[])
-         Arrays
-        .stream(rules)
-        .map(elem -> entry ("", elem))
-        .toArray(Entry[]::new)
-      );
+      return zeroOrMore (entries(rules));
     }
 
     static Rule zeroOrMore (Entry... entries) {
-      return new Rule (Type.ZERO_OR_MORE, entries);
+      return of (Type.ZERO_OR_MORE, entries);
     }
 
     static Rule oneOrMore (Rule... rules) {
-      //probably not perfect...
-      return oneOrMore (
-        (Entry[])
-         Arrays
-        .stream(rules)
-        .map(elem -> entry ("", elem))
-        .toArray(Entry[]::new)
-      );
+      return oneOrMore (entries(rules));
     }
 
     static Rule oneOrMore (Entry... entries) {
-      return new Rule (Type.ONE_OR_MORE, entries);
+      return of (Type.ONE_OR_MORE, entries);
     }
 
     static Rule moreOrZero (Rule... rules) {
-      //probably not perfect...
-      return moreOrZero (
-        (Entry[])
-         Arrays
-        .stream(rules)
-        .map(elem -> entry ("", elem))
-        .toArray(Entry[]::new)
-      );
+      return moreOrZero (entries(rules));
     }
 
     static Rule moreOrZero (Entry... entries) {
-      return new Rule (Type.MORE_OR_ZERO, entries);
+      return of (Type.MORE_OR_ZERO, entries);
     }
 
     static Rule moreOrOne (Rule... rules) {
-      //probably not perfect...
-      return moreOrOne (
-        (Entry[])
-         Arrays
-        .stream(rules)
-        .map(elem -> entry ("", elem))
-        .toArray(Entry[]::new)
-      );
+      return moreOrOne (entries(rules));
     }
 
     static Rule moreOrOne (Entry... entries) {
-      return new Rule (Type.MORE_OR_ONE, entries);
+      return of (Type.MORE_OR_ONE, entries);
+    }
+
+    /**
+    * Constructs a new Rule from the given {@code rules}, requiring them to appear consecutively zero or more times (possessive). 
+    * Consumes all consecutive appearances and never gives any back, so it leaves no backtracking state behind. 
+    * @param rules The rules
+    * @return the new Rule
+    */
+    static Rule allOrZero (Rule... rules) {
+      return allOrZero (entries(rules));
+    }
+
+    static Rule allOrZero (Entry... entries) {
+      return of (Type.ALL_OR_ZERO, entries);
+    }
+
+    /**
+    * Constructs a new Rule from the given {@code rules}, requiring them to appear consecutively one or more times (possessive). 
+    * Consumes all consecutive appearances and never gives any back, so it leaves no backtracking state behind. 
+    * @param rules The rules
+    * @return the new Rule
+    */
+    static Rule allOrOne (Rule... rules) {
+      return allOrOne (entries(rules));
+    }
+
+    static Rule allOrOne (Entry... entries) {
+      return of (Type.ALL_OR_ONE, entries);
+    }
+
+    /**
+    * Constructs a new Rule from the given {@code rules} as an atomic group. 
+    * Once the group matched, its match is never reconsidered, even if what follows fails. 
+    * @param rules The rules
+    * @return the new Rule
+    */
+    static Rule atomic (Rule... rules) {
+      return atomic (entries(rules));
+    }
+
+    static Rule atomic (Entry... entries) {
+      return of (Type.ATOMIC, entries);
+    }
+  }
+
+  /**
+  * A mutable staging area for building a sequence part by part.
+  * <p>Every call appends a single Entry in constant time. The Rule is only created by {@link #build()}, so building a sequence of n parts takes linear time, no matter how many calls it takes.
+  * @see Builder#chain(Rule...)
+  */
+  public static final class Chain {
+    private final ArrayList<Entry> entries = new ArrayList<>();
+
+    private Chain () {}
+
+    /**
+    * Appends the given {@code rules} as separate unnamed parts.
+    * @param rules The rules to be appended
+    * @return this Chain
+    */
+    public Chain rule (Rule... rules) {
+      for (Rule rule : rules)
+        entries.add(Builder.entry("", rule));
+      return this;
+    }
+
+    /**
+    * Appends the given {@code rules} as a single part associated with the given {@code name}. Multiple rules are grouped via {@link Builder#sequence(Rule...)}.
+    * @param name The name of the part
+    * @param rules The rules to be appended
+    * @return this Chain
+    */
+    public Chain rule (String name, Rule... rules) {
+      entries.add(Builder.entry(name, rules.length == 1 ? rules[0] : Builder.sequence(rules)));
+      return this;
+    }
+
+    /**
+    * Appends the given {@code entries} as they are.
+    * @param entries The entries to be appended
+    * @return this Chain
+    */
+    public Chain entry (Entry... entries) {
+      for (Entry entry : entries)
+        this.entries.add(entry);
+      return this;
+    }
+
+    public Chain regex (String regex) {
+      return rule(Builder.regex(regex));
+    }
+
+    public Chain regex (String name, String regex) {
+      return rule(name, Builder.regex(regex));
+    }
+
+    public Chain text (String text) {
+      return rule(Builder.text(text));
+    }
+
+    public Chain text (String name, String text) {
+      return rule(name, Builder.text(text));
+    }
+
+    public Chain oneOf (Rule... rules) {
+      return rule(Builder.oneOf(rules));
+    }
+
+    public Chain oneOf (String name, Rule... rules) {
+      return rule(name, Builder.oneOf(rules));
+    }
+
+    public Chain oneOf (String name, Entry... entries) {
+      return rule(name, Builder.oneOf(entries));
+    }
+
+    public Chain optional (Rule... rules) {
+      return rule(Builder.optional(rules));
+    }
+
+    public Chain optional (String name, Rule... rules) {
+      return rule(name, Builder.optional(rules));
+    }
+
+    public Chain zeroOrMore (Rule... rules) {
+      return rule(Builder.zeroOrMore(rules));
+    }
+
+    public Chain zeroOrMore (String name, Rule... rules) {
+      return rule(name, Builder.zeroOrMore(rules));
+    }
+
+    public Chain oneOrMore (Rule... rules) {
+      return rule(Builder.oneOrMore(rules));
+    }
+
+    public Chain oneOrMore (String name, Rule... rules) {
+      return rule(name, Builder.oneOrMore(rules));
+    }
+
+    public Chain moreOrZero (Rule... rules) {
+      return rule(Builder.moreOrZero(rules));
+    }
+
+    public Chain moreOrZero (String name, Rule... rules) {
+      return rule(name, Builder.moreOrZero(rules));
+    }
+
+    public Chain moreOrOne (Rule... rules) {
+      return rule(Builder.moreOrOne(rules));
+    }
+
+    public Chain moreOrOne (String name, Rule... rules) {
+      return rule(name, Builder.moreOrOne(rules));
+    }
+
+    public Chain allOrZero (Rule... rules) {
+      return rule(Builder.allOrZero(rules));
+    }
+
+    public Chain allOrZero (String name, Rule... rules) {
+      return rule(name, Builder.allOrZero(rules));
+    }
+
+    public Chain allOrOne (Rule... rules) {
+      return rule(Builder.allOrOne(rules));
+    }
+
+    public Chain allOrOne (String name, Rule... rules) {
+      return rule(name, Builder.allOrOne(rules));
+    }
+
+    public Chain atomic (Rule... rules) {
+      return rule(Builder.atomic(rules));
+    }
+
+    public Chain atomic (String name, Rule... rules) {
+      return rule(name, Builder.atomic(rules));
+    }
+
+    /**
+    * Associates the last appended part with the given {@code name}.
+    * @param name The name of the part
+    * @return this Chain
+    * @throws IllegalStateException if nothing was appended yet
+    */
+    public Chain name (String name) {
+      if (entries.isEmpty())
+        throw new IllegalStateException("Nothing to name yet.");
+      int index = entries.size()-1;
+      entries.set(index, Builder.entry(name, entries.get(index).rule()));
+      return this;
+    }
+
+    /**
+    * Creates the sequence of all appended parts. The Chain can be used further afterwards without affecting the created Rule.
+    * @return the new Rule
+    */
+    public Rule build () {
+      return Builder.sequence(entries.toArray(new Entry[0]));
+    }
+  }
+
+  /**
+  * The capturing group of a named {@link Entry} in the {@link Rule#pattern()} of the Rule it was assembled in, with the groups of the named Entries of its Rule.
+  */
+  static final class Group {
+    private final Entry entry;
+    private final int index;
+    private final List<Group> children;
+
+    private Group (Entry entry, int index, List<Group> children) {
+      this.entry = entry;
+      this.index = index;
+      this.children = List.copyOf(children);
+    }
+
+    Entry entry () {
+      return entry;
+    }
+
+    /**
+    * Get the number of the group, for {@link java.util.regex.Matcher#start(int)}.
+    * @return the group number
+    */
+    int index () {
+      return index;
+    }
+
+    List<Group> children () {
+      return children;
     }
   }
 
   public static class Entry {
-    private String name;
-    private Rule rule;
+    private final String name;
+    private final Rule rule;
 
     public Entry (String name, Rule rule) {
       this.name = name;
@@ -250,6 +726,26 @@ public class Rule {
     public Rule rule() {
       return rule;
     }
+
+    /**
+* Whether the given {@code object} is an Entry with the same name and an equal Rule.
+* @param object The object to compare to
+* @return whether they are equal
+    */
+    @Override
+    public boolean equals (Object object) {
+      if (object == this)
+        return true;
+      if (!(object instanceof Entry))
+        return false;
+      Entry other = (Entry) object;
+      return Objects.equals(name, other.name) && (rule == other.rule || Objects.equals(rule, other.rule));
+    }
+
+    @Override
+    public int hashCode () {
+      return 31 * Objects.hashCode(name) + Objects.hashCode(rule);
+    }
   }
 
 }
\ No newline at end of file
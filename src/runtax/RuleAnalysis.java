@@ -0,0 +1,752 @@
+package runtax;
+
+import java.util.List;
+import java.util.ArrayList;
+
+import java.util.Map;
+import java.util.IdentityHashMap;
+import java.util.TreeMap;
+
+/**
+* Static analysis and rewriting of Rules.
+* <p>The analysis works on the sets of chars a Rule can start with (its FIRST set) and whether it can match without consuming anything. Regex leaves are analysed by probing their Pattern with every single char, so they are treated as opaque. Any regex leaf that can match empty is assumed to start with anything, since it may be a zero-width assertion, and so is any regex leaf looking behind its start, which the probes can't tell.
+* <p>{@link #lint(Rule)} finds the shapes of Rules that make the regex engine backtrack catastrophically, and {@link #fix(Rule)} rewrites those that can be rewritten without changing any match. A {@link RuleMap} can run both as it is constructed, see its system property {@code runtax.lint}.
+*/
+public final class RuleAnalysis {
+
+  private RuleAnalysis () {}
+
+  /**
+* Rewrites the {@code rule} so that every repetition that provably never has to give anything back becomes possessive.
+* <p>A repetition of a single char class is made possessive ({@link Rule.Type#ALL_OR_ZERO}, {@link Rule.Type#ALL_OR_ONE}) if nothing that can follow it can start with a char of that class. Giving back a char could then never let the rest match, so backtracking into the repetition is pointless. Lazy repetitions are only rewritten if something non-empty has to follow them within the {@code rule}, as they otherwise match as little as possible.
+* <p>The matches of the returned Rule are the same as those of the given one. Entry names are kept, and parts that don't change are shared with the given Rule.
+* @param rule The rule
+* @return the rewritten Rule, or the given one if nothing could be made possessive
+  */
+  public static Rule possessive (Rule rule) {
+    return possessive(rule, CharSet.EMPTY, true);
+  }
+
+  /**
+* @param follow The chars whatever follows the {@code rule} can start with
+* @param end Whether the {@code rule} may also be followed by the end of the match
+  */
+  private static Rule possessive (Rule rule, CharSet follow, boolean end) {
+    List<Rule.Entry> entries = rule.rules();
+    if (entries.isEmpty())
+      return rule;
+
+    Rule.Type type = rule.type();
+    Rule.Entry[] rewritten = new Rule.Entry[entries.size()];
+    switch (type) {
+      case ONE_OF:
+      case OPTIONAL:
+      case ATOMIC:
+        for (int i = 0; i < rewritten.length; i++)
+          rewritten[i] = possessive(entries.get(i), follow, end);
+        break;
+      case ZERO_OR_MORE:
+      case ONE_OR_MORE:
+      case MORE_OR_ZERO:
+      case MORE_OR_ONE:
+      case ALL_OR_ZERO:
+      case ALL_OR_ONE:
+        CharSet body = first(entries);
+        CharSet chars = entries.size() == 1 ? singleChar(entries.get(0).rule()) : null;
+        boolean lazy = type == Rule.Type.ZERO_OR_MORE || type == Rule.Type.ONE_OR_MORE;
+        if (chars != null && !chars.intersects(follow) && !(lazy && end))
+          type = type == Rule.Type.ZERO_OR_MORE || type == Rule.Type.MORE_OR_ZERO ? Rule.Type.ALL_OR_ZERO
+            : type == Rule.Type.ONE_OR_MORE || type == Rule.Type.MORE_OR_ONE ? Rule.Type.ALL_OR_ONE
+            : type;
+        sequence(entries, rewritten, body.union(follow), end);
+        break;
+      default:
+        sequence(entries, rewritten, follow, end);
+    }
+
+    if (type == rule.type() && same(entries, rewritten))
+      return rule;
+    return Rule.of(type, rewritten);
+  }
+
+  private static Rule.Entry possessive (Rule.Entry entry, CharSet follow, boolean end) {
+    Rule rule = possessive(entry.rule(), follow, end);
+    return rule == entry.rule() ? entry : Rule.Builder.entry(entry.name(), rule);
+  }
+
+  /**
+* Rewrites the {@code entries} of a sequence into {@code out}, from the last to the first, so the FIRST set of the rest is known for every Entry.
+  */
+  private static void sequence (List<Rule.Entry> entries, Rule.Entry[] out, CharSet follow, boolean end) {
+    for (int i = entries.size()-1; i >= 0; i--) {
+      Rule.Entry entry = entries.get(i);
+      out[i] = possessive(entry, follow, end);
+      CharSet first = first(entry.rule());
+      if (nullable(entry.rule())) {
+        follow = first.union(follow);
+      } else {
+        follow = first;
+        end = false;
+      }
+    }
+  }
+
+  private static boolean same (List<Rule.Entry> entries, Rule.Entry[] rewritten) {
+    for (int i = 0; i < rewritten.length; i++) {
+      if (entries.get(i) != rewritten[i])
+        return false;
+    }
+    return true;
+  }
+
+  /**
+* Finds the parts of the {@code rule} that may make the regex engine take more than linear time to match it at a single position, as it backtracks into them after the rest of the match failed:
+* <ul>
+* <li>{@link Diagnostic.Kind#NESTED_REPETITION}: a repetition whose iterations may end in another repetition of chars the next iteration may start with, like {@code (a+)+} or {@code (a+b?)+}, so a run of those chars can be split into iterations in exponentially many ways.
+* <li>{@link Diagnostic.Kind#OVERLAPPING_ALTERNATIVES}: a ONE_OF whose alternatives may start with the same char, so the chars one of them matched may be matched again by the other. Exponential within a repetition, where every iteration may choose either of them, linear otherwise.
+* <li>{@link Diagnostic.Kind#OVERLAPPING_REPETITIONS}: a repetition followed by another one that may match the chars it gives back, like {@code \s*\s*}, so the chars can be split between them in many ways. Polynomial, or exponential within a repetition.
+* </ul>
+* <p>Only parts that may be backtracked into are reported. Nothing after the end of the {@code rule}, of an {@link Rule.Type#ATOMIC} group or of an iteration of a possessive repetition can make the engine try what's before it again, so the {@code rule} is analysed as matched on its own. Where it's part of another Rule, that one has to be analysed instead.
+* <p>Overlaps are judged by the chars the parts may start and end with, so a part may be reported even though no string can actually be matched in two ways. Regex leaves are opaque, so nothing within them is reported. The {@link ParseOptions.Engine#PEG} engine never backtracks into these parts, and {@link ParseOptions#steps(long)} bounds the time of either engine.
+* @param rule The Rule
+* @return the diagnostics in the order found, every part reported at most once per kind
+  */
+  public static List<Diagnostic> lint (Rule rule) {
+    Lint lint = new Lint();
+    lint.rule(rule, "", true, false);
+    return List.copyOf(lint.diagnostics);
+  }
+
+  /**
+* Finds the parts of every Rule of the {@code ruleMap} that may make the regex engine take more than linear time, like {@link #lint(Rule)}. Parts shared by several Rules are only reported for the first of them by name.
+* @param ruleMap The RuleMap
+* @return the diagnostics in the order found, every part reported at most once per kind
+  */
+  public static List<Diagnostic> lint (RuleMap ruleMap) {
+    Lint lint = new Lint();
+    for (Map.Entry<String, Rule> rule : new TreeMap<>(ruleMap.rules()).entrySet()) {
+      lint.name = rule.getKey();
+      lint.rule(rule.getValue(), "", true, false);
+    }
+    return List.copyOf(lint.diagnostics);
+  }
+
+  /**
+* Returns the worst-case complexity of matching the {@code rule} at a single position with the regex engine, as judged by {@link #lint(Rule)}.
+* @param rule The Rule
+* @return the worst complexity of any diagnostic, or {@link Complexity#LINEAR} if there is none
+  */
+  public static Complexity complexity (Rule rule) {
+    Complexity complexity = Complexity.LINEAR;
+    for (Diagnostic diagnostic : lint(rule)) {
+      if (diagnostic.complexity.compareTo(complexity) > 0)
+        complexity = diagnostic.complexity;
+    }
+    return complexity;
+  }
+
+  /**
+* Rewrites the {@code rule} in every way that keeps its matches the same and may remove backtracking.
+* <p>First, every repetition of a single repetition of a single char class becomes a single repetition, like {@code (a+)+} becomes {@code a+}, wherever the single repetition prefers the same matches in the same order. This removes the {@link Diagnostic.Kind#NESTED_REPETITION nested repetitions} of single chars, the classic shape of catastrophic backtracking. Then, every repetition that never has to give anything back becomes {@link #possessive(Rule) possessive}.
+* <p>Every other diagnostic of {@link #lint(Rule)} needs a change of the matches to be fixed, which only the author of the Rule can decide on. Entry names are kept, and parts that don't change are shared with the given Rule.
+* @param rule The rule
+* @return the rewritten Rule, or the given one if nothing could be rewritten
+  */
+  public static Rule fix (Rule rule) {
+    return possessive(collapse(rule));
+  }
+
+  private static Rule collapse (Rule rule) {
+    List<Rule.Entry> entries = rule.rules();
+    if (entries.isEmpty())
+      return rule;
+
+    Rule.Entry[] rewritten = new Rule.Entry[entries.size()];
+    for (int i = 0; i < rewritten.length; i++) {
+      Rule.Entry entry = entries.get(i);
+      Rule collapsed = collapse(entry.rule());
+      rewritten[i] = collapsed == entry.rule() ? entry : Rule.Builder.entry(entry.name(), collapsed);
+    }
+
+    Rule.Type type = rewritten.length == 1 && unnamed(rewritten[0]) ? collapsed(rule.type(), rewritten[0].rule()) : null;
+    if (type != null)
+      return Rule.of(type, rewritten[0].rule().rules().toArray(new Rule.Entry[0]));
+    if (same(entries, rewritten))
+      return rule;
+    return Rule.of(rule.type(), rewritten);
+  }
+
+  /**
+* Returns the type of the single repetition that prefers the same matches in the same order as a repetition of the given {@code type} around the {@code inner} Rule, or null if there is none or the {@code inner} Rule isn't a repetition of a single unnamed char class.
+* <p>The inner repetition has to match at least once, as a repetition around an empty iteration stops early.
+  */
+  private static Rule.Type collapsed (Rule.Type type, Rule inner) {
+    List<Rule.Entry> entries = inner.rules();
+    if (entries.size() != 1 || !unnamed(entries.get(0)) || singleChar(entries.get(0).rule()) == null)
+      return null;
+    boolean once = type == Rule.Type.ONE_OR_MORE || type == Rule.Type.MORE_OR_ONE || type == Rule.Type.ALL_OR_ONE;
+    switch (inner.type()) {
+      case ONE_OR_MORE:
+        //(a+?)+ tries every end from the longest, (a+?)+? from the shortest, just like a single repetition of the outer type
+        return repetition(type) ? type : null;
+      case MORE_OR_ONE:
+        //(a+)+? still tries the longest end first, but (a+)*? tries no iteration first and then the longest one
+        if (type == Rule.Type.ONE_OR_MORE)
+          return Rule.Type.MORE_OR_ONE;
+        return type == Rule.Type.ZERO_OR_MORE || !repetition(type) ? null : type;
+      case ALL_OR_ONE:
+        //(a++)* may still give back the whole iteration, so it only collapses if the outer repetition can't
+        if (once)
+          return Rule.Type.ALL_OR_ONE;
+        return type == Rule.Type.ALL_OR_ZERO ? type : null;
+      default:
+        return null;
+    }
+  }
+
+  private static boolean repetition (Rule.Type type) {
+    switch (type) {
+      case ZERO_OR_MORE:
+      case ONE_OR_MORE:
+      case MORE_OR_ZERO:
+      case MORE_OR_ONE:
+      case ALL_OR_ZERO:
+      case ALL_OR_ONE:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+* Whether a match of a Rule of the given {@code type} may be backtracked into: the greedy and lazy repetitions, but not the possessive ones.
+  */
+  private static boolean backtracking (Rule.Type type) {
+    return repetition(type) && type != Rule.Type.ALL_OR_ZERO && type != Rule.Type.ALL_OR_ONE;
+  }
+
+  private static boolean unnamed (Rule.Entry entry) {
+    return entry.name() == null || entry.name().isEmpty();
+  }
+
+  /**
+* Whether the {@code rule} always matches, even if only empty, so nothing after it can fail because of it.
+  */
+  private static boolean infallible (Rule rule) {
+    List<Rule.Entry> entries = rule.rules();
+    switch (rule.type()) {
+      case TEXT:
+        return rule.text().isEmpty();
+      case OPTIONAL:
+      case ZERO_OR_MORE:
+      case MORE_OR_ZERO:
+      case ALL_OR_ZERO:
+        return true;
+      case ONE_OF:
+        for (Rule.Entry entry : entries) {
+          if (infallible(entry.rule()))
+            return true;
+        }
+        return false;
+      default:
+        //a regex leaf may always be an assertion that fails
+        if (entries.isEmpty())
+          return false;
+        for (Rule.Entry entry : entries) {
+          if (!infallible(entry.rule()))
+            return false;
+        }
+        return true;
+    }
+  }
+
+  /**
+* Returns the set of chars a non-empty match of the {@code rule} can start with.
+  */
+  static CharSet first (Rule rule) {
+    List<Rule.Entry> entries = rule.rules();
+    switch (rule.type()) {
+      case TEXT:
+        return rule.text().isEmpty() ? CharSet.EMPTY : CharSet.of(rule.text().charAt(0));
+      case ONE_OF:
+        CharSet union = CharSet.EMPTY;
+        for (Rule.Entry entry : entries)
+          union = union.union(first(entry.rule()));
+        return union;
+      default:
+        if (entries.isEmpty())
+          return nullable(rule) || looksBehind(rule.regex()) ? CharSet.ALL
+            : rule.chars();
+        return first(entries);
+    }
+  }
+
+  /**
+* Returns the FIRST set of the sequence of the {@code entries}.
+  */
+  private static CharSet first (List<Rule.Entry> entries) {
+    CharSet union = CharSet.EMPTY;
+    for (Rule.Entry entry : entries) {
+      union = union.union(first(entry.rule()));
+      if (!nullable(entry.rule()))
+        break;
+    }
+    return union;
+  }
+
+  /**
+* Whether the {@code rule} can match without consuming anything.
+* <p>A regex leaf that looks around its match may only match empty next to certain chars, like {@code [a-z]*(?=;)}, so it counts as nullable.
+  */
+  static boolean nullable (Rule rule) {
+    List<Rule.Entry> entries = rule.rules();
+    switch (rule.type()) {
+      case TEXT:
+        return rule.text().isEmpty();
+      case OPTIONAL:
+      case ZERO_OR_MORE:
+      case MORE_OR_ZERO:
+      case ALL_OR_ZERO:
+        return true;
+      case ONE_OF:
+        for (Rule.Entry entry : entries) {
+          if (nullable(entry.rule()))
+            return true;
+        }
+        return false;
+      default:
+        if (entries.isEmpty())
+          return looksAhead(rule.regex()) || looksBehind(rule.regex()) || rule.pattern().matcher("").matches();
+        for (Rule.Entry entry : entries) {
+          if (!nullable(entry.rule()))
+            return false;
+        }
+        return true;
+    }
+  }
+
+  /**
+* Returns the set of chars the {@code rule} matches if it always matches exactly one char, or null otherwise.
+* <p>Regex leaves are only accepted if they syntactically are a single char class, like {@code [a-z]}, {@code \s}, {@code \p{Alpha}}, {@code .} or a single (escaped) char.
+  */
+  static CharSet singleChar (Rule rule) {
+    List<Rule.Entry> entries = rule.rules();
+    switch (rule.type()) {
+      case TEXT:
+        return rule.text().length() == 1 ? CharSet.of(rule.text().charAt(0)) : null;
+      case REGEX:
+        return singleCharClass(rule.regex()) ? rule.chars() : null;
+      case ONE_OF:
+        CharSet union = CharSet.EMPTY;
+        for (Rule.Entry entry : entries) {
+          CharSet chars = singleChar(entry.rule());
+          if (chars == null)
+            return null;
+          union = union.union(chars);
+        }
+        return union;
+      case SEQUENCE:
+      case ATOMIC:
+        return entries.size() == 1 ? singleChar(entries.get(0).rule()) : null;
+      default:
+        return null;
+    }
+  }
+
+  /**
+* Whether the {@code regex} may depend on the chars after its match, via a lookahead.
+  */
+  private static boolean looksAhead (String regex) {
+    return regex.contains("(?=") || regex.contains("(?!");
+  }
+
+  /**
+* Whether the {@code regex} may depend on the chars before its match, via a lookbehind, a word boundary or the end of the previous match.
+  */
+  private static boolean looksBehind (String regex) {
+    return regex.contains("(?<=") || regex.contains("(?<!") || regex.contains("\\b") || regex.contains("\\B") || regex.contains("\\G");
+  }
+
+  /**
+* Probes the chars a match of the regex leaf {@code rule} can start with: the chars it matches if it's a single char class, like {@code [a-z]}.
+  */
+  static CharSet probe (Rule rule) {
+    String regex = rule.regex();
+    return singleCharClass(regex) ? CharSet.matching(regex) : CharSet.starting(regex);
+  }
+
+  private static boolean singleCharClass (String regex) {
+    int length = regex.length();
+    if (length == 1)
+      return "\\^$|?*+()[]{}".indexOf(regex.charAt(0)) < 0;
+    if (regex.charAt(0) == '[')
+      return regex.charAt(length-1) == ']' && regex.indexOf('[', 1) < 0 && regex.indexOf(']') == length-1 && !regex.contains("&&");
+    if (regex.charAt(0) != '\\')
+      return false;
+    if (length == 2)
+      return "sSdDwWhHvV".indexOf(regex.charAt(1)) >= 0 || !Character.isLetterOrDigit(regex.charAt(1));
+    return (regex.charAt(1) == 'p' || regex.charAt(1) == 'P') && regex.charAt(2) == '{' && regex.indexOf('}') == length-1;
+  }
+
+  /**
+* How the time the regex engine takes to match a Rule at a single position may grow with the length of the input.
+  */
+  public enum Complexity {
+
+    /**
+* At most proportional to the length of the input.
+    */
+    LINEAR,
+
+    /**
+* Proportional to a power of the length of the input, as several repetitions may split the same chars between them.
+    */
+    POLYNOMIAL,
+
+    /**
+* Doubling with every few more chars, as a repetition may match the same chars in many ways.
+    */
+    EXPONENTIAL
+  }
+
+  /**
+* A part of a Rule that may make the regex engine backtrack more than linearly, found by {@link RuleAnalysis#lint(Rule)}.
+  */
+  public static final class Diagnostic {
+
+    /**
+* The shapes of Rules {@link RuleAnalysis#lint(Rule)} reports.
+    */
+    public enum Kind {
+      NESTED_REPETITION,
+      OVERLAPPING_ALTERNATIVES,
+      OVERLAPPING_REPETITIONS
+    }
+
+    private final String name;
+    private final String path;
+    private final Rule rule;
+    private final Kind kind;
+    private final Complexity complexity;
+    private final String message;
+
+    private Diagnostic (String name, String path, Rule rule, Kind kind, Complexity complexity, String message) {
+      this.name = name;
+      this.path = path;
+      this.rule = rule;
+      this.kind = kind;
+      this.complexity = complexity;
+      this.message = message;
+    }
+
+    /**
+* Returns the name of the Rule of the RuleMap the part was found in.
+* @return the name, or null if a single Rule was analysed
+    */
+    public String name () {
+      return name;
+    }
+
+    /**
+* Returns the path from the analysed Rule to the part, the name of every named Entry along the way and the index of every unnamed one, separated by {@code /}.
+* @return the path, empty for the analysed Rule itself
+    */
+    public String path () {
+      return path;
+    }
+
+    /**
+* Returns the part itself: the outer repetition, the ONE_OF or the first of the repetitions.
+* @return the Rule
+    */
+    public Rule rule () {
+      return rule;
+    }
+
+    public Kind kind () {
+      return kind;
+    }
+
+    public Complexity complexity () {
+      return complexity;
+    }
+
+    /**
+* Returns what may be matched in several ways.
+* @return the message
+    */
+    public String message () {
+      return message;
+    }
+
+    /**
+* Returns how the part could be rewritten so it no longer backtracks.
+* @return the suggestion
+    */
+    public String suggestion () {
+      switch (kind) {
+        case NESTED_REPETITION:
+          if (collapse(rule) != rule)
+            return "Collapse it into a single repetition, which RuleAnalysis.fix(Rule) does";
+          return "Make the inner repetition possessive, or make sure an iteration can't end with chars the next one can start with";
+        case OVERLAPPING_ALTERNATIVES:
+          return "Make the alternatives start with different chars, or make the ONE_OF atomic if the first alternative that matches is always the right one";
+        default:
+          return "Merge the repetitions, or make the first one possessive if it never has to give chars back to the second";
+      }
+    }
+
+    @Override
+    public String toString () {
+      String where = name == null ? path : path.isEmpty() ? name : name + "/" + path;
+      return complexity + " " + kind + (where.isEmpty() ? "" : " at " + where) + ": " + message + ". " + suggestion() + ".";
+    }
+  }
+
+  /**
+* A single run of {@link RuleAnalysis#lint(Rule)}, remembering the FIRST and LAST sets of every Rule, and every Rule it analysed, in which context.
+  */
+  private static final class Lint {
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+
+    /**
+* The index of the Diagnostic of every kind reported for a Rule, plus one.
+    */
+    private final Map<Rule, int[]> reported = new IdentityHashMap<>();
+
+    /**
+* The contexts every Rule was analysed in, as a bit for every combination of {@code tail} and {@code looped}.
+    */
+    private final Map<Rule, Integer> visited = new IdentityHashMap<>();
+
+    private final Map<Rule, CharSet> firsts = new IdentityHashMap<>();
+    private final Map<Rule, CharSet> lasts = new IdentityHashMap<>();
+    private final Map<Rule, Boolean> nullables = new IdentityHashMap<>();
+
+    private String name;
+
+    /**
+* Analyses the {@code rule} and every Rule within it.
+* @param path The path to the {@code rule}
+* @param tail Whether nothing after the {@code rule} can fail and make the engine backtrack into it
+* @param looped Whether the {@code rule} is part of an iteration of a repetition that may be backtracked into, so any way it may match in several ways multiplies with every iteration
+    */
+    private void rule (Rule rule, String path, boolean tail, boolean looped) {
+      int context = 1 << ((tail ? 1 : 0) | (looped ? 2 : 0));
+      int seen = visited.getOrDefault(rule, 0);
+      if ((seen & context) != 0)
+        return;
+      visited.put(rule, seen | context);
+
+      List<Rule.Entry> entries = rule.rules();
+      switch (rule.type()) {
+        case ATOMIC:
+        case ALL_OR_ZERO:
+        case ALL_OR_ONE:
+          //once the group or an iteration matched, it's never tried again, but within it, the engine backtracks as usual
+          sequence(entries, path, true, false);
+          break;
+        case ONE_OF:
+          //a keyword trie matches each keyword in a single way
+          if (!tail && !Trie.applies(rule))
+            alternatives(rule, path, looped);
+          for (int i = 0; i < entries.size(); i++)
+            rule(entries.get(i).rule(), path(path, entries.get(i), i), tail, looped);
+          break;
+        case ZERO_OR_MORE:
+        case ONE_OR_MORE:
+        case MORE_OR_ZERO:
+        case MORE_OR_ONE:
+          //if nothing after it can fail, the repetition simply stops at the first iteration that does
+          if (tail) {
+            sequence(entries, path, true, false);
+            break;
+          }
+          CharSet first = first(entries);
+          Rule inner = end(entries, first);
+          if (inner != null)
+            report(rule, path, Diagnostic.Kind.NESTED_REPETITION, Complexity.EXPONENTIAL, "Its iterations may end in " + abbreviate(inner.regex()) + ", which may match the chars " + abbreviate(first(inner).intersection(first).toString()) + " the next iteration can start with");
+          sequence(entries, path, false, true);
+          break;
+        default:
+          sequence(entries, path, tail, looped);
+      }
+    }
+
+    private void sequence (List<Rule.Entry> entries, String path, boolean tail, boolean looped) {
+      boolean[] tails = new boolean[entries.size()];
+      for (int i = tails.length-1; i >= 0; i--) {
+        tails[i] = tail;
+        tail = tail && infallible(entries.get(i).rule());
+      }
+
+      for (int i = 0; i < tails.length; i++) {
+        Rule.Entry entry = entries.get(i);
+        rule(entry.rule(), path(path, entry, i), tails[i], looped);
+        if (!tails[i] && backtracking(entry.rule().type()))
+          repetitions(entries, i, path(path, entry, i), looped);
+      }
+    }
+
+    /**
+* Reports the first pair of alternatives of the {@code rule} that may start with the same char, or may both match empty.
+    */
+    private void alternatives (Rule rule, String path, boolean looped) {
+      List<Rule.Entry> entries = rule.rules();
+      for (int i = 0; i < entries.size(); i++) {
+        Rule alternative = entries.get(i).rule();
+        for (int j = i+1; j < entries.size(); j++) {
+          Rule other = entries.get(j).rule();
+          CharSet common = first(alternative).intersection(first(other));
+          boolean empty = nullable(alternative) && nullable(other);
+          if (common.isEmpty() && !empty)
+            continue;
+          report(rule, path, Diagnostic.Kind.OVERLAPPING_ALTERNATIVES, looped ? Complexity.EXPONENTIAL : Complexity.LINEAR, "The alternatives " + name(entries.get(i), i) + " and " + name(entries.get(j), j) + " may both " + (common.isEmpty() ? "match empty" : "start with " + abbreviate(common.toString())) + (looped ? " in every iteration of a repetition around them" : ""));
+          return;
+        }
+      }
+    }
+
+    /**
+* Reports the repetition at {@code index} of the {@code entries} if a repetition after it, with nothing but Rules that may match empty in between, may match the chars it gives back.
+    */
+    private void repetitions (List<Rule.Entry> entries, int index, String path, boolean looped) {
+      Rule rule = entries.get(index).rule();
+      for (int i = index+1; i < entries.size(); i++) {
+        Rule next = entries.get(i).rule();
+        CharSet common = first(next).intersection(first(rule));
+        if (repetition(next.type()) && !common.isEmpty() && first(next).intersects(last(rule))) {
+          report(rule, path, Diagnostic.Kind.OVERLAPPING_REPETITIONS, looped ? Complexity.EXPONENTIAL : Complexity.POLYNOMIAL, "It may give back the chars " + abbreviate(common.toString()) + " to the repetition " + name(entries.get(i), i) + " after it" + (looped ? ", in every iteration of a repetition around them" : ""));
+          return;
+        }
+        if (!nullable(next))
+          return;
+      }
+    }
+
+    /**
+* Returns a repetition that may be backtracked into and may end a match of the sequence of the {@code entries} with chars that are also in {@code chars}, or null if there is none.
+    */
+    private Rule end (List<Rule.Entry> entries, CharSet chars) {
+      for (int i = entries.size()-1; i >= 0; i--) {
+        Rule rule = entries.get(i).rule();
+        Rule end = end(rule, chars);
+        if (end != null || !nullable(rule))
+          return end;
+      }
+      return null;
+    }
+
+    private Rule end (Rule rule, CharSet chars) {
+      switch (rule.type()) {
+        case ZERO_OR_MORE:
+        case ONE_OR_MORE:
+        case MORE_OR_ZERO:
+        case MORE_OR_ONE:
+          return first(rule).intersects(chars) && last(rule).intersects(chars) ? rule : null;
+        case ONE_OF:
+          for (Rule.Entry entry : rule.rules()) {
+            Rule end = end(entry.rule(), chars);
+            if (end != null)
+              return end;
+          }
+          return null;
+        case SEQUENCE:
+        case OPTIONAL:
+          return end(rule.rules(), chars);
+        default:
+          return null;
+      }
+    }
+
+    private void report (Rule rule, String path, Diagnostic.Kind kind, Complexity complexity, String message) {
+      int[] indices = reported.computeIfAbsent(rule, key -> new int[Diagnostic.Kind.values().length]);
+      int index = indices[kind.ordinal()] - 1;
+      Diagnostic diagnostic = new Diagnostic(name, path, rule, kind, complexity, message);
+      if (index < 0) {
+        diagnostics.add(diagnostic);
+        indices[kind.ordinal()] = diagnostics.size();
+      } else if (diagnostics.get(index).complexity.compareTo(complexity) < 0) {
+        //found again in a worse context
+        diagnostics.set(index, diagnostic);
+      }
+    }
+
+    private CharSet first (Rule rule) {
+      CharSet first = firsts.get(rule);
+      if (first == null) {
+        List<Rule.Entry> entries = rule.rules();
+        if (entries.isEmpty()) {
+          first = RuleAnalysis.first(rule);
+        } else if (rule.type() == Rule.Type.ONE_OF) {
+          first = CharSet.EMPTY;
+          for (Rule.Entry entry : entries)
+            first = first.union(first(entry.rule()));
+        } else {
+          first = first(entries);
+        }
+        firsts.put(rule, first);
+      }
+      return first;
+    }
+
+    private CharSet first (List<Rule.Entry> entries) {
+      CharSet union = CharSet.EMPTY;
+      for (Rule.Entry entry : entries) {
+        union = union.union(first(entry.rule()));
+        if (!nullable(entry.rule()))
+          break;
+      }
+      return union;
+    }
+
+    /**
+* Returns the set of chars a non-empty match of the {@code rule} can end with. Any regex leaf but a single char class is assumed to end with anything.
+    */
+    private CharSet last (Rule rule) {
+      CharSet last = lasts.get(rule);
+      if (last == null) {
+        List<Rule.Entry> entries = rule.rules();
+        if (rule.type() == Rule.Type.TEXT) {
+          last = rule.text().isEmpty() ? CharSet.EMPTY : CharSet.of(rule.text().charAt(rule.text().length()-1));
+        } else if (entries.isEmpty()) {
+          CharSet chars = singleChar(rule);
+          last = chars == null ? CharSet.ALL : chars;
+        } else if (rule.type() == Rule.Type.ONE_OF) {
+          last = CharSet.EMPTY;
+          for (Rule.Entry entry : entries)
+            last = last.union(last(entry.rule()));
+        } else {
+          last = CharSet.EMPTY;
+          for (int i = entries.size()-1; i >= 0; i--) {
+            last = last.union(last(entries.get(i).rule()));
+            if (!nullable(entries.get(i).rule()))
+              break;
+          }
+        }
+        lasts.put(rule, last);
+      }
+      return last;
+    }
+
+    private boolean nullable (Rule rule) {
+      Boolean nullable = nullables.get(rule);
+      if (nullable == null)
+        nullables.put(rule, nullable = RuleAnalysis.nullable(rule));
+      return nullable;
+    }
+
+    private static String path (String path, Rule.Entry entry, int index) {
+      String step = name(entry, index);
+      return path.isEmpty() ? step : path + "/" + step;
+    }
+
+    private static String name (Rule.Entry entry, int index) {
+      return unnamed(entry) ? String.valueOf(index) : entry.name();
+    }
+
+    private static String abbreviate (String string) {
+      return string.length() > 60 ? string.substring(0, 57) + "..." : string;
+    }
+  }
+}
@@ -4,8 +4,13 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.Collections;
 
+import java.util.List;
+
+import java.util.regex.Pattern;
+
 /**
 * A map of Rules.
+* <p>RuleMaps are immutable, just like their Rules, so a single instance can be used by any number of concurrent parses.
 * <p>Subclasses with hard-coded Rules should follow this format: 
 <pre>{@code
 package runtax;
@@ -17,7 +22,9 @@ import java.util.HashMap;
 
 public class BasicRuleMap extends RuleMap {
 
-  private static BasicRuleMap instance;
+  private static final class Holder {
+    private static final BasicRuleMap INSTANCE = new BasicRuleMap();
+  }
 
   protected BasicRuleMap () {
     super(init(null));
@@ -48,21 +55,37 @@ public class BasicRuleMap extends RuleMap {
   }
 
   public static BasicRuleMap instance () {
-    if (instance == null) 
-      instance = new BasicRuleMap();
-    return instance;
+    return Holder.INSTANCE;
   }
 }
 }
 </pre>
+* <p>The Rules of every RuleMap are checked for catastrophic backtracking via {@link RuleAnalysis#lint(RuleMap)} as it is constructed, as set by the system property {@code runtax.lint}:
+* <ul>
+* <li>{@code warn}, the default: the diagnostics are kept for {@link #diagnostics()}, and those of Rules the regex engine may take more than linear time to match are logged as a warning via the {@link System.Logger} {@code runtax}.
+* <li>{@code strict}: constructing a RuleMap with any Rule the regex engine may take more than linear time to match fails with an IllegalArgumentException listing the diagnostics.
+* <li>{@code fix}: every Rule is rewritten via {@link RuleAnalysis#fix(Rule)} first, then the diagnostics of the rewritten Rules are kept and logged like for {@code warn}.
+* <li>{@code off}: nothing is checked until the {@link #diagnostics()} are asked for.
+* </ul>
+* <p>Any other value makes constructing a RuleMap fail with an IllegalArgumentException naming it, except for the built-in {@link ParserRuleMap}.
+* <p>The built-in {@link ParserRuleMap} is only ever warned about, as its Rules define how Rule files are read. Parses of malformed Rule files are bounded by the default steps of {@link ParsedRuleMap} instead. A {@link ParsedRuleMap#update(int, int, String...)} isn't checked again either, so editing a Rule file stays fast.
 * @see runtax.BasicRuleMap
 * @see runtax.Rule.Builder
 * @see runtax.Rule.Builder#regex(String)
 * @author Lexyth
 */
 public class RuleMap {
+
+  /**
+* The value of the system property {@code runtax.lint}.
+  */
+  static final String LINT = System.getProperty("runtax.lint", "warn");
+
+  private static final System.Logger LOGGER = System.getLogger("runtax");
   
-  private Map<String, Rule> rules;
+  private final Map<String, Rule> rules;
+
+  private volatile List<RuleAnalysis.Diagnostic> diagnostics;
 
   /**
 * Constructs a new RuleMap using the Rules from the given {@code ruleMaps}. Duplicate keys will be overwritten by the last entry without warning and in no guaranteed order. May be reworked.
@@ -70,10 +93,7 @@ public class RuleMap {
 * @see java.util.Map#putAll(Map)
   */
   public RuleMap (RuleMap... ruleMaps) {
-    rules = new HashMap<>();
-    for (int i = 0; i < ruleMaps.length; i++) {
-      rules.putAll(ruleMaps[i].rules());
-    }
+    this(merge(ruleMaps), LINT);
   }
   
   /**
@@ -82,17 +102,71 @@ public class RuleMap {
 * @see java.util.Map#putAll(Map)
   */
   public RuleMap (Map<String, Rule> map) {
-    rules = new HashMap<>(map);
+    this(map, LINT);
+  }
+
+  /**
+* Constructs a new RuleMap from the Rules in the given {@code map}, checking them as set by the given {@code lint} mode, which is one of the values of {@code runtax.lint}.
+  * @param map The Map with the Rules
+  * @param lint How to check the Rules, usually {@code runtax.lint} itself
+  * @throws IllegalArgumentException if {@code lint} is {@code strict} and a Rule may take more than linear time to match, or if {@code lint} is none of {@code warn}, {@code strict}, {@code fix} and {@code off}
+  */
+  RuleMap (Map<String, Rule> map, String lint) {
+    check(lint);
+    Map<String, Rule> rules = new HashMap<>(map);
+    if (lint.equals("fix"))
+      rules.replaceAll((name, rule) -> RuleAnalysis.fix(rule));
+    this.rules = Collections.unmodifiableMap(rules);
+    if (lint.equals("off"))
+      return;
+
+    StringBuilder slow = new StringBuilder();
+    for (RuleAnalysis.Diagnostic diagnostic : diagnostics()) {
+      if (diagnostic.complexity() != RuleAnalysis.Complexity.LINEAR)
+        slow.append(System.lineSeparator()).append(diagnostic);
+    }
+    if (slow.length() == 0)
+      return;
+    if (lint.equals("strict"))
+      throw new IllegalArgumentException("Rules may backtrack catastrophically:" + slow);
+    LOGGER.log(System.Logger.Level.WARNING, "Rules may backtrack catastrophically:" + slow);
+  }
+
+  private static Map<String, Rule> merge (RuleMap... ruleMaps) {
+    Map<String, Rule> rules = new HashMap<>();
+    for (int i = 0; i < ruleMaps.length; i++) {
+      rules.putAll(ruleMaps[i].rules());
+    }
+    return rules;
   }
 
   /**
-* Returns an unmodifiable view of the Rules contained in this RuleMap.
-* @return a view of the Rules
+* Checks a {@code lint} mode, which is only done as a RuleMap is constructed, so an invalid value of {@code runtax.lint} never keeps this class from being initialized.
+  */
+  private static void check (String lint) {
+    if (!lint.equals("warn") && !lint.equals("strict") && !lint.equals("fix") && !lint.equals("off"))
+      throw new IllegalArgumentException("runtax.lint has to be warn, strict, fix or off: " + lint);
+  }
+
+  /**
+* Returns the unmodifiable Rules contained in this RuleMap.
+* @return the Rules
 * @see java.util.Collections#unmodifiableMap(Map)
   */
   
   public Map<String, Rule> rules () {
-    return Collections.unmodifiableMap(rules);
+    return rules;
+  }
+
+  /**
+* Returns the diagnostics of {@link RuleAnalysis#lint(RuleMap)} for the Rules of this RuleMap, found when it was constructed or on first use.
+* @return the diagnostics
+  */
+  public List<RuleAnalysis.Diagnostic> diagnostics () {
+    List<RuleAnalysis.Diagnostic> diagnostics = this.diagnostics;
+    if (diagnostics == null)
+      this.diagnostics = diagnostics = RuleAnalysis.lint(this);
+    return diagnostics;
   }
 
   /**
@@ -104,6 +178,19 @@ public class RuleMap {
     return rules.get(name);
   }
 
+  /**
+* Returns the compiled Pattern of a Rule by its associated name. The Pattern is shared through the {@link PatternCache}.
+* @param name The name of the Rule
+* @return the compiled Pattern of the Rule with this name, or null if there is no such Rule
+* @see Rule#pattern()
+  */
+  public Pattern pattern(String name) {
+    Rule rule = rules.get(name);
+    if (rule == null)
+      return null;
+    return rule.pattern();
+  }
+
   /**
 * {inheritDoc}
   */
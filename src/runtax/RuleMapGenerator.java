@@ -0,0 +1,284 @@
+package runtax;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.IdentityHashMap;
+
+import java.util.Set;
+import java.util.HashSet;
+
+import java.util.List;
+import java.util.ArrayList;
+
+/**
+* Generates the source of a hard-coded RuleMap subclass in the format prescribed by {@link RuleMap}, so a rule file doesn't have to be parsed at runtime.
+* <p>The generated class builds the Rules directly via {@link Rule.Builder}, sharing every Rule that's shared in the given RuleMap. For every Rule of the RuleMap, it has a {@code public static final Pattern}, compiled when the class is initialized, and a {@code public static final String} constant of its named regex, as long as that fits into a class file constant.
+* <p>Usage, also available via {@code generate.sh}:
+<pre>
+java runtax.RuleMapGenerator &lt;rule file&gt; &lt;qualified class name&gt; &lt;source directory&gt;
+</pre>
+* @see ParsedRuleMap
+*/
+public final class RuleMapGenerator {
+
+  /**
+* The maximum number of bytes of a String constant in a class file.
+  */
+  private static final int MAX_CONSTANT = 65535;
+
+  /**
+* The number of Rules built per method, to keep every method well below the size limit of the JVM.
+  */
+  private static final int RULES_PER_METHOD = 256;
+
+  private RuleMapGenerator () {}
+
+  public static void main (String[] args) throws IOException {
+    if (args.length != 3) {
+      System.err.println("Usage: java runtax.RuleMapGenerator <rule file> <qualified class name> <source directory>");
+      System.exit(2);
+    }
+    File file = new File(args[0]);
+    String qualified = args[1];
+    int dot = qualified.lastIndexOf('.');
+    String packageName = dot < 0 ? "" : qualified.substring(0, dot);
+    String className = qualified.substring(dot + 1);
+
+    String source = generate(new ParsedRuleMap(file, ParserRuleMap.instance()), packageName, className, file.getName());
+    Path out = Paths.get(args[2], packageName.split("\\.")).resolve(className + ".java");
+    Files.createDirectories(out.getParent());
+    Files.write(out, source.getBytes(StandardCharsets.UTF_8));
+    System.out.println("Generated " + out);
+  }
+
+  /**
+* Returns the source of a RuleMap subclass with the Rules of the {@code ruleMap}.
+  * @param ruleMap The RuleMap to hard-code
+  * @param packageName The package of the class, or an empty String for the default package
+  * @param className The simple name of the class
+  * @param origin Where the Rules come from, only mentioned in the class comment
+  * @return the source of the class
+  */
+  public static String generate (RuleMap ruleMap, String packageName, String className, String origin) {
+    //sorted, so the same Rules always generate the same source
+    Map<String, Rule> named = new TreeMap<>(ruleMap.rules());
+    Map<Rule, Integer> pool = new IdentityHashMap<>();
+    List<Rule> rules = new ArrayList<>();
+    for (Rule rule : named.values())
+      pool(rule, pool, rules);
+
+    Map<String, String> constants = new TreeMap<>();
+    Set<String> used = new HashSet<>();
+    for (String name : named.keySet())
+      constants.put(name, constant(name, used));
+
+    StringBuilder out = new StringBuilder();
+    if (!packageName.isEmpty())
+      out.append("package ").append(packageName).append(";\n\n");
+    out.append("import static runtax.Rule.Builder.*;\n\n");
+    out.append("import java.util.Map;\n");
+    out.append("import java.util.HashMap;\n\n");
+    out.append("import java.util.regex.Pattern;\n\n");
+    out.append("import runtax.Rule;\n");
+    out.append("import runtax.RuleMap;\n\n");
+
+    out.append("/**\n");
+    out.append("* The Rules of {@code ").append(javadoc(origin)).append("}, generated by {@link runtax.RuleMapGenerator}. Don't edit, generate again instead.\n");
+    out.append("*/\n");
+    out.append("public class ").append(className).append(" extends RuleMap {\n\n");
+
+    out.append("  /**\n");
+    out.append("* Holds the only instance of this RuleMap. Class initialization creates it on first use and safely publishes it to every thread. \n");
+    out.append("  */\n");
+    out.append("  private static final class Holder {\n");
+    out.append("    private static final ").append(className).append(" INSTANCE = new ").append(className).append("();\n");
+    out.append("  }\n\n");
+
+    out.append("  /**\n");
+    out.append("* Every distinct Rule, each after its parts.\n");
+    out.append("  */\n");
+    out.append("  private static final Rule[] RULES = new Rule[").append(rules.size()).append("];\n\n");
+    out.append("  static {\n");
+    for (int i = 0; i < rules.size(); i += RULES_PER_METHOD)
+      out.append("    rules").append(i / RULES_PER_METHOD).append("();\n");
+    out.append("  }\n\n");
+
+    for (Map.Entry<String, Rule> entry : named.entrySet()) {
+      String regex = entry.getValue().namedRegex();
+      if (constantLength(regex) <= MAX_CONSTANT)
+        out.append("  public static final String ").append(constants.get(entry.getKey())).append("_REGEX = ").append(literal(regex)).append(";\n");
+    }
+    out.append('\n');
+    for (Map.Entry<String, Rule> entry : named.entrySet())
+      out.append("  public static final Pattern ").append(constants.get(entry.getKey())).append("_PATTERN = RULES[").append(pool.get(entry.getValue())).append("].pattern();\n");
+    out.append('\n');
+
+    out.append("  /**\n");
+    out.append("* Constructs this ").append(className).append(" from the generated Rules.\n");
+    out.append("  */\n");
+    out.append("  protected ").append(className).append(" () {\n");
+    out.append("    super(init(null));\n");
+    out.append("  }\n\n");
+
+    out.append("  /**\n");
+    out.append("* Constructs this ").append(className).append(" from the generated Rules and the given {@code map}. The Rules in the {@code map} have priority and will override generated Rules with the same key. \n");
+    out.append("  * @param map A map of additional Rules\n");
+    out.append("  */\n");
+    out.append("  protected ").append(className).append(" (Map<String, Rule> map) {\n");
+    out.append("    super(init(map));\n");
+    out.append("  }\n\n");
+
+    out.append("  private static Map<String, Rule> init (Map<String, Rule> map) {\n");
+    out.append("    Map<String, Rule> rules = new HashMap<>();\n");
+    for (Map.Entry<String, Rule> entry : named.entrySet())
+      out.append("    rules.put(").append(literal(entry.getKey())).append(", RULES[").append(pool.get(entry.getValue())).append("]);\n");
+    out.append("    if (map != null)\n");
+    out.append("      rules.putAll(map);\n");
+    out.append("    return rules;\n");
+    out.append("  }\n\n");
+
+    for (int i = 0; i < rules.size(); i++) {
+      if (i % RULES_PER_METHOD == 0)
+        out.append("  private static void rules").append(i / RULES_PER_METHOD).append(" () {\n");
+      out.append("    RULES[").append(i).append("] = ");
+      rule(out, rules.get(i), pool);
+      out.append(";\n");
+      if (i % RULES_PER_METHOD == RULES_PER_METHOD-1 || i == rules.size()-1)
+        out.append("  }\n\n");
+    }
+
+    out.append("  /**\n");
+    out.append("* Get the single instance this class can have. Creates it if none exists yet. Thread-safe.\n");
+    out.append("* @return the single instance\n");
+    out.append("  */\n");
+    out.append("  public static ").append(className).append(" instance () {\n");
+    out.append("    return Holder.INSTANCE;\n");
+    out.append("  }\n");
+    out.append("}\n");
+    return out.toString();
+  }
+
+  /**
+* Adds the {@code rule} to the {@code pool} after all of its parts.
+  */
+  private static void pool (Rule rule, Map<Rule, Integer> pool, List<Rule> rules) {
+    if (pool.containsKey(rule))
+      return;
+    for (Rule.Entry entry : rule.rules())
+      pool(entry.rule(), pool, rules);
+    pool.put(rule, rules.size());
+    rules.add(rule);
+  }
+
+  /**
+* Appends the {@link Rule.Builder} call building the {@code rule} from the already built Rules of the {@code pool}.
+  */
+  private static void rule (StringBuilder out, Rule rule, Map<Rule, Integer> pool) {
+    switch (rule.type()) {
+      case TEXT:
+        out.append("text(").append(literal(rule.text())).append(')');
+        return;
+      case REGEX:
+        out.append("regex(").append(literal(rule.regex())).append(')');
+        return;
+      default:
+        out.append(builder(rule.type())).append('(');
+        List<Rule.Entry> entries = rule.rules();
+        for (int i = 0; i < entries.size(); i++) {
+          Rule.Entry entry = entries.get(i);
+          if (i > 0)
+            out.append(", ");
+          out.append("entry(").append(literal(entry.name())).append(", RULES[").append(pool.get(entry.rule())).append("])");
+        }
+        out.append(')');
+    }
+  }
+
+  private static String builder (Rule.Type type) {
+    switch (type) {
+      case SEQUENCE: return "sequence";
+      case ONE_OF: return "oneOf";
+      case OPTIONAL: return "optional";
+      case ZERO_OR_MORE: return "zeroOrMore";
+      case ONE_OR_MORE: return "oneOrMore";
+      case MORE_OR_ZERO: return "moreOrZero";
+      case MORE_OR_ONE: return "moreOrOne";
+      case ALL_OR_ZERO: return "allOrZero";
+      case ALL_OR_ONE: return "allOrOne";
+      case ATOMIC: return "atomic";
+      default: throw new IllegalArgumentException("Can't generate a Rule of type " + type);
+    }
+  }
+
+  /**
+* Returns a unique constant name for the Rule {@code name}, like {@code RULE_ENTRY} for {@code ruleEntry}.
+  */
+  private static String constant (String name, Set<String> used) {
+    StringBuilder constant = new StringBuilder();
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (Character.isUpperCase(c) && i > 0 && Character.isLowerCase(name.charAt(i-1)))
+        constant.append('_');
+      constant.append(Character.isJavaIdentifierPart(c) ? Character.toUpperCase(c) : '_');
+    }
+    if (constant.length() == 0 || !Character.isJavaIdentifierStart(constant.charAt(0)) || constant.toString().equals("_"))
+      constant.insert(0, '_');
+    String unique = constant.toString();
+    for (int i = 2; !used.add(unique); i++)
+      unique = constant + "_" + i;
+    return unique;
+  }
+
+  /**
+* Returns the Java String literal of the {@code string}.
+  */
+  private static String literal (String string) {
+    if (string == null)
+      return "null";
+    StringBuilder literal = new StringBuilder(string.length() + 2).append('"');
+    for (int i = 0; i < string.length(); i++) {
+      char c = string.charAt(i);
+      switch (c) {
+        case '"': literal.append("\\\""); break;
+        case '\\': literal.append("\\\\"); break;
+        case '\n': literal.append("\\n"); break;
+        case '\r': literal.append("\\r"); break;
+        case '\t': literal.append("\\t"); break;
+        default:
+          //unicode escapes would be translated before the literal is even read, so control chars are escaped in octal
+          if (c < ' ')
+            literal.append(String.format("\\%03o", (int) c));
+          else if (c > '~')
+            literal.append(String.format("\\u%04x", (int) c));
+          else
+            literal.append(c);
+      }
+    }
+    return literal.append('"').toString();
+  }
+
+  /**
+* Returns the length of the {@code string} in the modified UTF-8 of class files.
+  */
+  private static int constantLength (String string) {
+    int length = 0;
+    for (int i = 0; i < string.length(); i++) {
+      char c = string.charAt(i);
+      length += c >= 0x01 && c <= 0x7F ? 1 : c <= 0x7FF ? 2 : 3;
+    }
+    return length;
+  }
+
+  private static String javadoc (String string) {
+    return string.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("*/", "*&#47;").replace("@", "&#64;").replace("}", "&#125;");
+  }
+}
@@ -0,0 +1,281 @@
+package runtax;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+* Stores a RuleMap in a compact binary snapshot, so it can be loaded again without parsing its rule file.
+* <p>A snapshot holds the SHA-256 hash of the source it was built from together with the RuleMap defining its format, every distinct Rule once, and the names of the Rules of the RuleMap. Composite Rules refer to their parts by index, so Rules shared within the RuleMap are shared again after loading. Regexes aren't stored, as they are assembled from the Rules in a single pass on first use anyway, which is no slower than reading them, and would repeat the regex of a shared Rule everywhere it's used.
+* <p>The format, in big-endian order:
+<pre>
+int magic "RTAX", int version, byte[32] hash
+int count, count Rules, every part before the Rules containing it:
+  byte type, then for leaves: string regex or text
+             otherwise:       int count, count times: string name, int rule
+int count, count times: string name, int rule
+</pre>
+* <p>Strings are stored as their number of UTF-8 bytes followed by the bytes, or -1 for null. Since Rule types are stored by ordinal, the {@link #VERSION} changes whenever {@link Rule.Type} does.
+* <p>Example:
+<pre>{@code
+RuleMap rules = RuleMapSnapshot.load(new File("rules.txt"), ParserRuleMap.instance(), Paths.get("rules.snapshot"));
+}</pre>
+*/
+public final class RuleMapSnapshot {
+
+  /**
+* "RTAX"
+  */
+  public static final int MAGIC = 0x52544158;
+  public static final int VERSION = 1;
+
+  private static final int HASH = 32;
+
+  private RuleMapSnapshot () {}
+
+  /**
+* Returns the RuleMap of the rule {@code file}, loaded from the {@code snapshot} if that was built from the current content of the file with the same Rules of the {@code ruleMap}, see {@link #hash(byte[], RuleMap)}.
+* <p>Otherwise the file is parsed into a {@link ParsedRuleMap} and the snapshot is written again for the next time. As the snapshot is only a cache, failing to write it is ignored.
+  * @param file The rule file
+  * @param ruleMap The RuleMap defining the format of the file
+  * @param snapshot The path of the snapshot
+  * @return the RuleMap of the file, a plain RuleMap if it was loaded from the snapshot
+  * @throws IOException if the file can't be read
+  */
+  public static RuleMap load (File file, RuleMap ruleMap, Path snapshot) throws IOException {
+    byte[] hash = hash(Files.readAllBytes(file.toPath()), ruleMap);
+    try {
+      RuleMap loaded = read(snapshot, hash);
+      if (loaded != null)
+        return loaded;
+    } catch (IOException ioe) {
+      //missing or corrupt, so rebuild it
+    }
+
+    ParsedRuleMap parsed = new ParsedRuleMap(file, ruleMap);
+    try {
+      write(parsed, hash, snapshot);
+    } catch (IOException ioe) {
+      //the snapshot is only a cache
+    }
+    return parsed;
+  }
+
+  /**
+* Returns the SHA-256 hash of the {@code content} of a source, as stored in snapshots of RuleMaps whose format doesn't change.
+  * @param content The content
+  * @return the hash
+  */
+  public static byte[] hash (byte[] content) {
+    return digest().digest(content);
+  }
+
+  /**
+* Returns the SHA-256 hash of the {@code content} of a rule file together with the name and {@link Rule#regex()} of every Rule of the {@code ruleMap} defining its format, as stored in snapshots by {@link #load(File, RuleMap, Path)}. A snapshot is therefore built again whenever either of them changes, like the {@link ParserRuleMap} of a new version of this library.
+  * @param content The content
+  * @param ruleMap The RuleMap defining the format of the content
+  * @return the hash
+  */
+  public static byte[] hash (byte[] content, RuleMap ruleMap) {
+    MessageDigest digest = digest();
+    digest.update(content);
+    for (Map.Entry<String, Rule> entry : new TreeMap<>(ruleMap.rules()).entrySet()) {
+      update(digest, entry.getKey());
+      update(digest, entry.getValue().regex());
+    }
+    return digest.digest();
+  }
+
+  private static MessageDigest digest () {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException nsae) {
+      //every Java platform supports SHA-256
+      throw new IllegalStateException(nsae);
+    }
+  }
+
+  /**
+* Adds the {@code string} to the {@code digest} prefixed with its number of UTF-8 bytes, so no two sequences of strings are digested alike.
+  */
+  private static void update (MessageDigest digest, String string) {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+    digest.update(bytes);
+  }
+
+  /**
+* Writes the {@code ruleMap} to a snapshot at the {@code path}. The snapshot is written to a temporary file first and then moved into place, so readers never see a partial snapshot.
+  * @param ruleMap The RuleMap
+  * @param hash The hash of the source of the RuleMap
+  * @param path The path of the snapshot
+  * @throws IOException if the snapshot can't be written
+  */
+  public static void write (RuleMap ruleMap, byte[] hash, Path path) throws IOException {
+    if (hash.length != HASH)
+      throw new IllegalArgumentException("Expected a SHA-256 hash, got " + hash.length + " bytes");
+
+    Map<Rule, Integer> pool = new IdentityHashMap<>();
+    for (Rule rule : ruleMap.rules().values())
+      pool(rule, pool);
+    Rule[] rules = new Rule[pool.size()];
+    for (Map.Entry<Rule, Integer> entry : pool.entrySet())
+      rules[entry.getValue()] = entry.getKey();
+
+    Path absolute = path.toAbsolutePath();
+    Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.write(hash);
+
+        out.writeInt(rules.length);
+        for (Rule rule : rules) {
+          out.writeByte(rule.type().ordinal());
+          List<Rule.Entry> entries = rule.rules();
+          if (leaf(rule)) {
+            writeString(out, rule.type() == Rule.Type.TEXT ? rule.text() : rule.regex());
+            continue;
+          }
+          out.writeInt(entries.size());
+          for (Rule.Entry entry : entries) {
+            writeString(out, entry.name());
+            out.writeInt(pool.get(entry.rule()));
+          }
+        }
+
+        out.writeInt(ruleMap.rules().size());
+        for (Map.Entry<String, Rule> entry : ruleMap.rules().entrySet()) {
+          writeString(out, entry.getKey());
+          out.writeInt(pool.get(entry.getValue()));
+        }
+      }
+      try {
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException amnse) {
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+* Loads the RuleMap of the snapshot at the {@code path} by mapping it into memory.
+  * @param path The path of the snapshot
+  * @param hash The hash the source of the snapshot has to have, or null to accept any source
+  * @return the RuleMap, or null if the file isn't a snapshot of this version or was built from another source
+  * @throws IOException if the snapshot can't be read or is corrupt
+  */
+  public static RuleMap read (Path path, byte[] hash) throws IOException {
+    ByteBuffer in;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } catch (NoSuchFileException nsfe) {
+      return null;
+    }
+
+    try {
+      if (in.remaining() < 8 + HASH || in.getInt() != MAGIC || in.getInt() != VERSION)
+        return null;
+      byte[] stored = new byte[HASH];
+      in.get(stored);
+      if (hash != null && !Arrays.equals(stored, hash))
+        return null;
+
+      Rule[] rules = new Rule[in.getInt()];
+      Rule.Type[] types = Rule.Type.values();
+      for (int i = 0; i < rules.length; i++) {
+        Rule.Type type = types[in.get()];
+        if (type == Rule.Type.TEXT) {
+          rules[i] = Rule.Builder.text(readString(in));
+        } else if (type == Rule.Type.REGEX) {
+          rules[i] = Rule.Builder.regex(readString(in));
+        } else {
+          Rule.Entry[] entries = new Rule.Entry[in.getInt()];
+          for (int j = 0; j < entries.length; j++)
+            entries[j] = Rule.Builder.entry(readString(in), part(rules, in.getInt(), i));
+          rules[i] = Rule.of(type, entries);
+        }
+      }
+
+      int count = in.getInt();
+      Map<String, Rule> map = new HashMap<>();
+      for (int i = 0; i < count; i++)
+        map.put(readString(in), part(rules, in.getInt(), rules.length));
+      if (in.hasRemaining())
+        throw new IOException("Corrupt snapshot " + path + ", unexpected data at " + in.position());
+      return new RuleMap(map);
+    } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+      throw new IOException("Corrupt snapshot " + path, e);
+    }
+  }
+
+  /**
+* Adds the {@code rule} to the {@code pool} after all of its parts, so they are stored first.
+  */
+  private static void pool (Rule rule, Map<Rule, Integer> pool) {
+    if (pool.containsKey(rule))
+      return;
+    for (Rule.Entry entry : rule.rules())
+      pool(entry.rule(), pool);
+    pool.put(rule, pool.size());
+  }
+
+  private static boolean leaf (Rule rule) {
+    return rule.type() == Rule.Type.TEXT || rule.type() == Rule.Type.REGEX;
+  }
+
+  /**
+* Returns the Rule at the {@code index} of the {@code rules}, which has to be stored before the Rule at {@code before}.
+  */
+  private static Rule part (Rule[] rules, int index, int before) {
+    if (index < 0 || index >= before)
+      throw new IndexOutOfBoundsException("Rule " + index);
+    return rules[index];
+  }
+
+  private static void writeString (DataOutputStream out, String string) throws IOException {
+    if (string == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString (ByteBuffer in) {
+    int length = in.getInt();
+    if (length < 0)
+      return null;
+    byte[] bytes = new byte[length];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
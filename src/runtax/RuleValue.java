@@ -0,0 +1,153 @@
+package runtax;
+
+import java.util.Map;
+
+import java.util.Set;
+import java.util.HashSet;
+
+import java.util.List;
+import java.util.ArrayList;
+
+/**
+* Builds the Rule of a single value, as documented in {@link ParserRuleMap}.
+* <p>Tokens are separated by spaces and form a sequence. A token is either a {@code "text"}, a {@code 'regex'}, a group in parentheses, or a word. A word is the Rule declared under that name above, or the text of the word if there is none. Every token may be directly followed by any of {@code ?}, {@code *} and {@code +}, which build greedy repetitions. A {@code |} surrounded by spaces separates alternatives and binds loosest, so {@code "a" | "b" | "c" "d"} is either {@code a}, {@code b} or {@code cd}.
+*/
+final class RuleValue {
+  private final String value;
+  private final Map<String, Rule> rules;
+  private final Set<String> words = new HashSet<>();
+  private int pos;
+
+  RuleValue (String value, Map<String, Rule> rules) {
+    this.value = value;
+    this.rules = rules;
+  }
+
+  String value () {
+    return value;
+  }
+
+  /**
+* Returns every word of the value, whether it names a Rule or not. Only valid after {@link #parse()}.
+  */
+  Set<String> words () {
+    return words;
+  }
+
+  /**
+* Returns the Rule of the value.
+* @throws IllegalArgumentException if the value is malformed
+  */
+  Rule parse () {
+    Rule rule = alternatives();
+    if (pos < value.length())
+      throw new IllegalArgumentException("Unexpected ')' at " + pos + " in value: " + value);
+    return rule;
+  }
+
+  private Rule alternatives () {
+    List<Rule> alternatives = new ArrayList<>();
+    alternatives.add(sequence());
+    while (separator()) {
+      pos++;
+      alternatives.add(sequence());
+    }
+    if (alternatives.size() == 1)
+      return alternatives.get(0);
+    return Rule.Builder.oneOf(alternatives.toArray(new Rule[0]));
+  }
+
+  private Rule sequence () {
+    List<Rule> tokens = new ArrayList<>();
+    while (skipSpace() && value.charAt(pos) != ')' && !separator())
+      tokens.add(token());
+    if (tokens.isEmpty())
+      throw new IllegalArgumentException("Missing token at " + pos + " in value: " + value);
+    if (tokens.size() == 1)
+      return tokens.get(0);
+    return Rule.Builder.sequence(tokens.toArray(new Rule[0]));
+  }
+
+  private Rule token () {
+    Rule rule;
+    char c = value.charAt(pos);
+    if (c == '(') {
+      pos++;
+      rule = alternatives();
+      if (!skipSpace() || value.charAt(pos) != ')')
+        throw new IllegalArgumentException("Missing ')' in value: " + value);
+      pos++;
+    } else if (c == '"') {
+      rule = Rule.Builder.text(quoted('"'));
+    } else if (c == '\'') {
+      rule = Rule.Builder.regex(quoted('\''));
+    } else {
+      int start = pos;
+      while (pos < value.length() && !Character.isWhitespace(value.charAt(pos)) && value.charAt(pos) != '(' && value.charAt(pos) != ')')
+        pos++;
+      int end = pos;
+      while (end > start && isSpecialAfter(value.charAt(end-1)))
+        end--;
+      //a word of nothing but special chars is just text
+      if (end == start)
+        end = pos;
+      pos = end;
+      String word = value.substring(start, end);
+      words.add(word);
+      rule = rules.containsKey(word) ? rules.get(word) : Rule.Builder.text(word);
+    }
+    while (pos < value.length() && isSpecialAfter(value.charAt(pos))) {
+      switch (value.charAt(pos++)) {
+        case '?':
+          rule = Rule.Builder.optional(rule);
+          break;
+        case '*':
+          rule = Rule.Builder.moreOrZero(rule);
+          break;
+        default:
+          rule = Rule.Builder.moreOrOne(rule);
+      }
+    }
+    return rule;
+  }
+
+  /**
+* Reads a quoted token up to the closing {@code quote}, which may be escaped with a backslash inside of it.
+  */
+  private String quoted (char quote) {
+    StringBuilder builder = new StringBuilder();
+    for (pos++; pos < value.length(); pos++) {
+      char c = value.charAt(pos);
+      if (c == quote) {
+        pos++;
+        return builder.toString();
+      }
+      if (c == '\\' && pos + 1 < value.length() && value.charAt(pos + 1) == quote)
+        c = value.charAt(++pos);
+      builder.append(c);
+    }
+    throw new IllegalArgumentException("Missing closing " + quote + " in value: " + value);
+  }
+
+  /**
+* Whether a {@code |} surrounded by spaces is at the current position.
+  */
+  private boolean separator () {
+    return pos < value.length() && value.charAt(pos) == '|'
+      && (pos + 1 == value.length() || Character.isWhitespace(value.charAt(pos + 1)))
+      && (pos == 0 || Character.isWhitespace(value.charAt(pos - 1)));
+  }
+
+  /**
+* Skips spaces and returns whether anything is left.
+  */
+  private boolean skipSpace () {
+    while (pos < value.length() && Character.isWhitespace(value.charAt(pos)))
+      pos++;
+    return pos < value.length();
+  }
+
+  private static boolean isSpecialAfter (char c) {
+    return c == '?' || c == '*' || c == '+';
+  }
+}
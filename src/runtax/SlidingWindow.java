@@ -0,0 +1,208 @@
+package runtax;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+
+import java.nio.CharBuffer;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import java.util.regex.Matcher;
+import java.util.regex.MatchResult;
+
+/**
+* Finds the matches of a Rule in a Reader like {@link Matcher#find()} would in the whole input, while only ever holding a fixed-size window of it.
+* <p>A match is only reported once more input can't change it anymore: as long as {@link Matcher#hitEnd()} or {@link Matcher#requireEnd()} say the result depends on what follows, the window is refilled and the scan repeated. Matches spanning the boundary between two reads are therefore found exactly as in the whole input.
+* <p>When the window is full, everything before the scan position is dropped, but for the last {@value #CONTEXT} chars, which lookbehinds and boundaries can still see. The buffer holds those chars on top of the size of the window, so every match fits that is no longer than the window, including whatever the Rule looks at past its end to decide it. Otherwise, an IOException is thrown, as deciding the match would need a larger window.
+* <p>Note: Not thread-safe. Every scan uses its own instance.
+*/
+final class SlidingWindow {
+
+  /**
+* The default size of the window in chars.
+  */
+  static final int SIZE = 1 << 16;
+
+  /**
+* The number of chars kept before the scan position when the window moves on.
+  */
+  static final int CONTEXT = 256;
+
+  private final Reader reader;
+  private final Matcher matcher;
+  private final char[] buffer;
+  private final Guard.Budget budget;
+
+  /**
+* The number of chars in the buffer, where the next scan starts and the offset of the buffer in the input.
+  */
+  private int limit;
+  private int pos;
+  private long offset;
+
+  private boolean eof;
+
+  /**
+* Creates a SlidingWindow of {@code size} chars over the {@code reader}.
+* @throws IllegalArgumentException if the {@code size} isn't positive
+  */
+  SlidingWindow (Reader reader, Rule rule, int size) {
+    this(reader, rule, size, null);
+  }
+
+  /**
+* Creates a SlidingWindow of {@code size} chars over the {@code reader}, spending the {@code budget} on every char the scans read.
+* @param budget The budget, or null for none
+* @throws IllegalArgumentException if the {@code size} isn't positive
+  */
+  SlidingWindow (Reader reader, Rule rule, int size, Guard.Budget budget) {
+    if (size <= 0 || size > Integer.MAX_VALUE - CONTEXT)
+      throw new IllegalArgumentException("The window has to be positive: " + size);
+    this.reader = reader;
+    this.budget = budget;
+    this.buffer = new char[CONTEXT + size];
+    this.matcher = rule.pattern().matcher(CharBuffer.wrap(buffer, 0, 0));
+    matcher.useTransparentBounds(true);
+    matcher.useAnchoringBounds(false);
+  }
+
+  /**
+* Finds the next match, reading as much input as it takes to decide it.
+* @return whether there is one, then held by the {@link #matcher()}
+* @throws IOException if the input can't be read, or a match doesn't fit into the window
+* @throws ParseLimitException if the scans exceed the budget
+  */
+  boolean find () throws IOException {
+    while (true) {
+      if (pos <= limit) {
+        int end = scanEnd();
+        matcher.region(pos, end);
+        boolean found = matcher.find();
+        boolean undecided = (end < limit || !eof) && (matcher.hitEnd() || (found && matcher.requireEnd()));
+        if (undecided) {
+          skip(end);
+        } else if (found) {
+          //after an empty match, the next scan starts one char later, just like find() does
+          pos = matcher.end() > matcher.start() ? matcher.end() : matcher.end() + 1;
+          return true;
+        } else if (end == limit && eof) {
+          return false;
+        } else {
+          pos = end;
+        }
+      } else if (eof) {
+        return false;
+      }
+      fill();
+    }
+  }
+
+  /**
+* Returns where the next scan ends: after the last line terminator of the window, unless it's the end of the input or the window can't move on anymore.
+* <p>A scan never decides anything that depends on what lies past its end, so this is only about speed: a regex may backtrack a lot before giving up on an incomplete line, which it would have to do again once the line is complete.
+  */
+  private int scanEnd () {
+    if (eof || (limit == buffer.length && Math.min(pos, limit) <= CONTEXT))
+      return limit;
+    for (int i = limit - 1; i >= pos; i--) {
+      char c = buffer[i];
+      if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029')
+        return i + 1;
+    }
+    return pos;
+  }
+
+  /**
+* Moves the scan position past every position before {@code end} no match can start at anymore, no matter what follows, up to the first one whose match depends on what follows.
+  */
+  private void skip (int end) {
+    for (; pos < end; pos++) {
+      matcher.region(pos, end);
+      if (matcher.lookingAt() || matcher.hitEnd())
+        return;
+    }
+  }
+
+  /**
+* Reads what the input has to offer right away, first dropping everything but the {@link #CONTEXT} before the scan position if the window is full already.
+  */
+  private void fill () throws IOException {
+    if (limit == buffer.length) {
+      int drop = Math.min(pos, limit) - CONTEXT;
+      if (drop <= 0)
+        throw new IOException("A match at offset " + (offset + pos) + " doesn't fit into the window of " + (buffer.length - CONTEXT) + " chars");
+      System.arraycopy(buffer, drop, buffer, 0, limit - drop);
+      limit -= drop;
+      pos -= drop;
+      offset += drop;
+    }
+    //blocks for the first read only, so piped input is matched as it arrives
+    int read = 0;
+    while (read == 0 || (read > 0 && limit < buffer.length && reader.ready())) {
+      read = reader.read(buffer, limit, buffer.length - limit);
+      if (read > 0)
+        limit += read;
+    }
+    if (read < 0)
+      eof = true;
+    CharBuffer window = CharBuffer.wrap(buffer, 0, limit);
+    matcher.reset(budget == null ? window : new Guard(window, budget, offset));
+  }
+
+  /**
+* Returns the Matcher holding the last match found, with offsets into the window.
+  */
+  Matcher matcher () {
+    return matcher;
+  }
+
+  /**
+* Returns the offset of the window in the input.
+  */
+  long offset () {
+    return offset;
+  }
+
+  /**
+* Returns the chars of the window from {@code start} to {@code end}.
+  */
+  String text (int start, int end) {
+    return new String(buffer, start, end - start);
+  }
+
+  /**
+* Returns a Spliterator over the remaining matches, each a copy independent of the window. It never splits, as the window can only be read in order.
+  */
+  Spliterator<MatchResult> spliterator () {
+    return new Spliterator<MatchResult>() {
+      @Override
+      public boolean tryAdvance (Consumer<? super MatchResult> action) {
+        try {
+          if (!find())
+            return false;
+        } catch (IOException ioe) {
+          throw new UncheckedIOException(ioe);
+        }
+        action.accept(MatchSpliterator.Match.copy(CharBuffer.wrap(buffer, 0, limit), offset, matcher));
+        return true;
+      }
+
+      @Override
+      public Spliterator<MatchResult> trySplit () {
+        return null;
+      }
+
+      @Override
+      public long estimateSize () {
+        return Long.MAX_VALUE;
+      }
+
+      @Override
+      public int characteristics () {
+        return ORDERED | NONNULL;
+      }
+    };
+  }
+}
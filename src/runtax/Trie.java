@@ -0,0 +1,206 @@
+package runtax;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import java.util.List;
+import java.util.ArrayList;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+/**
+* The prefix trie of a keyword {@link Rule.Type#ONE_OF}: a choice between at least two alternatives that are all unnamed {@link Rule.Type#TEXT} Rules.
+* <p>Instead of trying every alternative in turn, both engines walk the trie once per position, so matching takes time in the length of the match, not in the number of keywords. The regex of such a Rule is the trie as nested groups, each of them a choice between branches starting with different chars, with the end of a shorter keyword made optional behind the longer ones.
+* <p>Either way the longest keyword wins: the PEG engine commits to it, a regex still backtracks to shorter ones if what follows fails. The order of the alternatives doesn't matter anymore, unlike for any other ONE_OF.
+* <p>Tries are immutable and shared by every parse, keyed by their Rule, which is only held weakly.
+*/
+final class Trie {
+
+  private static final Trie NONE = new Trie(new char[0][], new int[0][], new boolean[0]);
+
+  private static final Map<Rule, Trie> tries = Collections.synchronizedMap(new WeakHashMap<>());
+
+  /**
+* The sorted chars leading out of every node, with the node each leads to. Node 0 is the root.
+  */
+  private final char[][] labels;
+  private final int[][] targets;
+
+  /**
+* Whether a keyword ends at every node.
+  */
+  private final boolean[] terminal;
+
+  private Trie (char[][] labels, int[][] targets, boolean[] terminal) {
+    this.labels = labels;
+    this.targets = targets;
+    this.terminal = terminal;
+  }
+
+  /**
+* Whether the given {@code rule} is a keyword ONE_OF, matched via a Trie.
+  */
+  static boolean applies (Rule rule) {
+    List<Rule.Entry> entries = rule.rules();
+    if (rule.type() != Rule.Type.ONE_OF || entries.size() < 2)
+      return false;
+    for (Rule.Entry entry : entries) {
+      String name = entry.name();
+      if (entry.rule().type() != Rule.Type.TEXT || (name != null && !name.isEmpty()))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+* Returns the Trie of the given {@code rule}.
+* @return the Trie, or null if the {@code rule} isn't a keyword ONE_OF
+  */
+  static Trie of (Rule rule) {
+    Trie trie = tries.computeIfAbsent(rule, Trie::build);
+    return trie == NONE ? null : trie;
+  }
+
+  private static Trie build (Rule rule) {
+    if (!applies(rule))
+      return NONE;
+
+    Node root = node(rule, false);
+    List<Node> nodes = new ArrayList<>();
+    nodes.add(root);
+    //breadth-first, so every node gets its index before its children are numbered
+    for (int i = 0; i < nodes.size(); i++) {
+      nodes.get(i).index = i;
+      nodes.addAll(nodes.get(i).children.values());
+    }
+
+    char[][] labels = new char[nodes.size()][];
+    int[][] targets = new int[nodes.size()][];
+    boolean[] terminal = new boolean[nodes.size()];
+    for (Node node : nodes) {
+      labels[node.index] = new char[node.children.size()];
+      targets[node.index] = new int[node.children.size()];
+      int i = 0;
+      for (Map.Entry<Integer, Node> child : node.children.entrySet()) {
+        labels[node.index][i] = (char) (int) child.getKey();
+        targets[node.index][i++] = child.getValue().index;
+      }
+      terminal[node.index] = node.terminal;
+    }
+    return new Trie(labels, targets, terminal);
+  }
+
+  /**
+* Returns the end of the longest keyword at {@code pos}.
+* @param source The source
+* @param pos The position
+* @param limit The end of the source
+* @return the end, or -1 if no keyword matches
+  */
+  int match (CharSequence source, int pos, int limit) {
+    int node = 0;
+    int end = terminal[0] ? pos : -1;
+    for (int i = pos; i < limit; i++) {
+      int index = Arrays.binarySearch(labels[node], source.charAt(i));
+      if (index < 0)
+        break;
+      node = targets[node][index];
+      if (terminal[node])
+        end = i + 1;
+    }
+    return end;
+  }
+
+  /**
+* Appends the regex of the keyword ONE_OF {@code rule} to the {@code builder}, within the single capturing group every ONE_OF has.
+  */
+  static void appendRegex (StringBuilder builder, Rule rule) {
+    builder.append('(');
+    //a regex matches code points, so a surrogate pair is never split between branches
+    appendRegex(builder, node(rule, true));
+    builder.append(')');
+  }
+
+  private static void appendRegex (StringBuilder builder, Node node) {
+    //a chain of single chars needs no group
+    while (!node.terminal && node.children.size() == 1) {
+      Map.Entry<Integer, Node> child = node.children.firstEntry();
+      appendLiteral(builder, child.getKey());
+      node = child.getValue();
+    }
+    if (node.children.isEmpty())
+      return;
+
+    //keywords ending right after their last branch become a single char class
+    List<Integer> ends = new ArrayList<>();
+    List<Map.Entry<Integer, Node>> branches = new ArrayList<>();
+    for (Map.Entry<Integer, Node> child : node.children.entrySet()) {
+      if (child.getValue().children.isEmpty())
+        ends.add(child.getKey());
+      else
+        branches.add(child);
+    }
+
+    boolean group = node.terminal || branches.size() + (ends.isEmpty() ? 0 : 1) > 1;
+    if (group)
+      builder.append("(?:");
+    for (int i = 0; i < branches.size(); i++) {
+      if (i > 0)
+        builder.append('|');
+      appendLiteral(builder, branches.get(i).getKey());
+      appendRegex(builder, branches.get(i).getValue());
+    }
+    if (!ends.isEmpty()) {
+      if (!branches.isEmpty())
+        builder.append('|');
+      if (ends.size() == 1) {
+        appendLiteral(builder, ends.get(0));
+      } else {
+        builder.append('[');
+        for (int c : ends)
+          appendLiteral(builder, c);
+        builder.append(']');
+      }
+    }
+    if (group)
+      builder.append(')');
+    //greedy, so the longer keywords are tried first
+    if (node.terminal)
+      builder.append('?');
+  }
+
+  /**
+* Appends the code point {@code c} as a literal, escaping every ASCII char but letters and digits, which is valid both inside and outside of a char class.
+  */
+  private static void appendLiteral (StringBuilder builder, int c) {
+    if (c < 128 && !((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')))
+      builder.append('\\');
+    builder.appendCodePoint(c);
+  }
+
+  /**
+* Returns the root of the trie of the keywords of the {@code rule}, over their code points or their chars.
+  */
+  private static Node node (Rule rule, boolean codePoints) {
+    Node root = new Node();
+    for (Rule.Entry entry : rule.rules()) {
+      String text = entry.rule().text();
+      Node node = root;
+      for (int i = 0; i < text.length(); ) {
+        int c = codePoints ? text.codePointAt(i) : text.charAt(i);
+        node = node.children.computeIfAbsent(c, key -> new Node());
+        i += codePoints ? Character.charCount(c) : 1;
+      }
+      node.terminal = true;
+    }
+    return root;
+  }
+
+  private static final class Node {
+    private final TreeMap<Integer, Node> children = new TreeMap<>();
+    private boolean terminal;
+    private int index;
+  }
+}
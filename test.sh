@@ -0,0 +1,2 @@
+echo "Compiling Tests"
+mkdir -p target/test && javac -encoding UTF-8 -d target/test $(find src test -name "*.java") && echo "Running Tests" && java -ea -cp target/test runtax.PegEngineTest "$@" && java -ea -cp target/test runtax.FindInTest
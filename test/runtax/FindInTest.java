@@ -0,0 +1,59 @@
+package runtax;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import java.util.List;
+import java.util.regex.MatchResult;
+import java.util.stream.Collectors;
+
+import static runtax.Rule.Builder.*;
+
+/**
+* Checks that a parallel {@link Rule#findIn(CharSequence)} finds the same matches as a sequential one, even where matches span the line terminators the input is split at.
+* <p>Run via {@code test.sh}, which fails on the first check that doesn't hold.
+*/
+final class FindInTest {
+
+  private FindInTest () {}
+
+  public static void main (String[] args) throws IOException {
+    linesOfTheRuleFile();
+    literalsAcrossSplits();
+    System.out.println("FindInTest passed");
+  }
+
+  private static void linesOfTheRuleFile () throws IOException {
+    String file = new String(Files.readAllBytes(Paths.get("src/runtax/rules/test.txt")));
+    String source = file.repeat(600_000 / file.length() + 1);
+    Rule line = ParserRuleMap.instance().get("line");
+    check(parallel(source, line).equals(sequential(source, line)), "a parallel scan finds the lines of a sequential one");
+  }
+
+  private static void literalsAcrossSplits () {
+    String source = "ab\ncd\n".repeat(200_000);
+    Rule literal = text("b\nc");
+    check(parallel(source, literal).equals(sequential(source, literal)), "a parallel scan finds literals spanning a split");
+    Rule overlapping = regex("b\\nc|d\\na");
+    check(parallel(source, overlapping).equals(sequential(source, overlapping)), "a parallel scan finds matches spanning a split");
+  }
+
+  private static List<String> sequential (String source, Rule rule) {
+    return rule.findIn(source).map(FindInTest::offsets).collect(Collectors.toList());
+  }
+
+  private static List<String> parallel (String source, Rule rule) {
+    return rule.findIn(source).parallel().map(FindInTest::offsets).collect(Collectors.toList());
+  }
+
+  private static String offsets (MatchResult match) {
+    return match.start() + "-" + match.end();
+  }
+
+  private static void check (boolean condition, String message) {
+    if (!condition)
+      throw new AssertionError(message);
+  }
+}
@@ -0,0 +1,97 @@
+package runtax;
+
+import java.io.IOException;
+
+import java.util.Map;
+import java.util.List;
+import java.util.ArrayList;
+
+import static runtax.Rule.Builder.*;
+
+/**
+* Checks the matches of the {@link ParseOptions.Engine#PEG} engine, which mostly agree with those of the regex engine, but commit wherever a parsing expression grammar does.
+* <p>Run via {@code test.sh}, which fails on the first check that doesn't hold.
+*/
+final class PegEngineTest {
+
+  private static final ParseOptions PEG = ParseOptions.DEFAULT.engine(ParseOptions.Engine.PEG);
+
+  private PegEngineTest () {}
+
+  public static void main (String[] args) throws IOException {
+    orderedChoiceCommits();
+    greedyNeverGivesBack();
+    lazyStopsAtFirstFollow();
+    lazyTakesLinearTime();
+    namedEntriesPerIteration();
+    emptyMatchesAdvance();
+    supplementaryCodePoints();
+    System.out.println("PegEngineTest passed");
+  }
+
+  private static void orderedChoiceCommits () throws IOException {
+    Rule rule = sequence(oneOf(regex("a"), regex("ab")), text("c"));
+    check(matches("abc", rule, PEG).isEmpty(), "a choice commits to its first matching alternative");
+    check(matches("abc", rule, ParseOptions.DEFAULT).equals(List.of("abc")), "the regex engine backtracks into the choice");
+    Rule keywords = sequence(oneOf(text("a"), text("ab")), text("c"));
+    check(matches("abc", keywords, PEG).equals(List.of("abc")), "a choice between texts commits to the longest one");
+  }
+
+  private static void greedyNeverGivesBack () throws IOException {
+    Rule rule = sequence(moreOrZero(regex("a")), text("a"));
+    check(matches("aaa", rule, PEG).isEmpty(), "a greedy repetition never gives anything back");
+    check(matches("aaa", rule, ParseOptions.DEFAULT).equals(List.of("aaa")), "the regex engine gives back the last a");
+  }
+
+  private static void lazyStopsAtFirstFollow () throws IOException {
+    Rule rule = sequence(zeroOrMore(regex(".")), text(";"));
+    check(matches("ab;;c;", rule, PEG).equals(List.of("ab;", ";", "c;")), "a lazy repetition stops where the rest matches first");
+    Rule once = sequence(oneOrMore(regex(".")), text(";"));
+    check(matches("ab;;c;", once, PEG).equals(List.of("ab;", ";c;")), "a lazy repetition matches its minimum first");
+  }
+
+  private static void lazyTakesLinearTime () throws IOException {
+    //every char is read a few times at most, while backtracking from every start would read about n * n / 2 chars
+    int n = 100_000;
+    Rule rule = sequence(zeroOrMore(regex("a")), text(";"));
+    List<String> matches = matches("a".repeat(n) + "b;", rule, PEG.steps(20L * n));
+    check(matches.equals(List.of(";")), "a lazy repetition shares its iterations between start positions");
+  }
+
+  private static void namedEntriesPerIteration () throws IOException {
+    Rule rule = sequence(moreOrOne(entry("letter", regex("[a-z]"))), text(";"));
+    Parser.AST ast = Parser.parseSource("abc;", new RuleMap(Map.of("main", rule)), PEG);
+    Parser.AST.Node match = ast.root().children().get(0);
+    check(match.children().size() == 3, "a named Entry yields a Node for every iteration");
+    check(match.children().get(2).text().equals("c"), "the Nodes of the iterations are in order");
+  }
+
+  private static void emptyMatchesAdvance () throws IOException {
+    Rule rule = regex("[a-z]*(?=;)");
+    List<String> expected = List.of("ab", "", "");
+    check(matches("ab;;", rule, PEG).equals(expected), "the PEG engine moves on after an empty match");
+    check(matches("ab;;", rule, ParseOptions.DEFAULT).equals(expected), "the regex engine moves on after an empty match");
+  }
+
+  private static void supplementaryCodePoints () throws IOException {
+    Rule rule = oneOf(entry("symbol", regex("\\p{So}")), entry("x", text("x")));
+    String source = "😀x😀";
+    check(matches(source, rule, PEG).size() == 3, "dispatch tries alternatives starting with a supplementary code point");
+    check(matches(source, rule, ParseOptions.DEFAULT).size() == 3, "the prefilter stops at supplementary code points");
+  }
+
+  /**
+  * Returns the text of every match of the {@code rule} in the {@code source}.
+  */
+  private static List<String> matches (String source, Rule rule, ParseOptions options) throws IOException {
+    List<String> matches = new ArrayList<>();
+    for (Parser.AST.Node node : Parser.parseSource(source, new RuleMap(Map.of("main", rule)), options).root().children())
+      matches.add(node.text());
+    return matches;
+  }
+
+  private static void check (boolean condition, String message) {
+    if (!condition)
+      throw new AssertionError(message);
+  }
+}